@@ -11,4 +11,522 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Search search = new Search();
+
+    private final Reindex reindex = new Reindex();
+
+    private final SearchOutbox searchOutbox = new SearchOutbox();
+
+    private final RestClient restClient = new RestClient();
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Reindex getReindex() {
+        return reindex;
+    }
+
+    public SearchOutbox getSearchOutbox() {
+        return searchOutbox;
+    }
+
+    public RestClient getRestClient() {
+        return restClient;
+    }
+
+    public static class Search {
+
+        /**
+         * Above this number of hits, the total returned with a page is only a lower bound.
+         */
+        private int trackTotalHits = 10000;
+
+        /**
+         * Period after which the random order of a user changes, when no seed is given.
+         */
+        private long seedRotationInSeconds = 86400;
+
+        /**
+         * Period after which the animals get a new random rank, for the shuffled order.
+         */
+        private long shuffleInSeconds = 3600;
+
+        /**
+         * Delay in milliseconds between two checks that the period of the random ranks is over.
+         */
+        private long shuffleCheckDelay = 60000;
+
+        /**
+         * Maximum number of animals returned by a random sample.
+         */
+        private int maxSampleSize = 100;
+
+        /**
+         * Time to live in seconds of the cached pages of search results.
+         */
+        private long cacheTimeToLiveSeconds = 60;
+
+        /**
+         * Maximum number of pages of search results in the cache.
+         */
+        private long cacheMaxEntries = 1000;
+
+        /**
+         * Maximum number of ids of a random search kept to serve its pages, the deeper pages are searched.
+         */
+        private int maxMaterializedIds = 10000;
+
+        /**
+         * Time to live in seconds of the ids of the random searches.
+         */
+        private long materializedIdsTimeToLiveSeconds = 600;
+
+        /**
+         * Off-heap memory in megabytes for the ids of the random searches.
+         */
+        private long materializedIdsOffHeapMb = 64;
+
+        /**
+         * Search only the ids of the animals, and read the animals from the second-level cache or the database.
+         */
+        private boolean idsOnly = false;
+
+        /**
+         * Distance between two promoted slots of the interleaved order, the first position is a promoted slot.
+         */
+        private int promotedSlotInterval = 5;
+
+        /**
+         * Delay in milliseconds between two flushes of the impressions of the promoted animals.
+         */
+        private long impressionsFlushDelay = 10000;
+
+        /**
+         * Number of impressions halving the random score of a promoted animal.
+         */
+        private long impressionsScale = 1000;
+
+        /**
+         * Maximum number of characters of a query string.
+         */
+        private int maxQueryLength = 500;
+
+        /**
+         * Maximum number of terms, phrases and other leaf clauses of a query string.
+         */
+        private int maxQueryClauses = 64;
+
+        /**
+         * Maximum number of characters of a regular expression in a query string.
+         */
+        private int maxRegexpLength = 50;
+
+        /**
+         * Maximum number of fuzzy terms in a query string.
+         */
+        private int maxFuzzyTerms = 3;
+
+        /**
+         * Number of leading characters a fuzzy term must match exactly.
+         */
+        private int fuzzyPrefixLength = 1;
+
+        /**
+         * Maximum number of terms each fuzzy term of a query string is expanded to.
+         */
+        private int fuzzyMaxExpansions = 20;
+
+        /**
+         * Time in milliseconds after which a relevance search fails with status 503 (Service Unavailable) instead of
+         * returning partial results, 0 to wait for all the hits.
+         */
+        private long searchTimeout = 2000;
+
+        /**
+         * Number of hits after which each shard stops collecting for the relevance searches, 0 to collect all of them.
+         */
+        private int terminateAfter = 100000;
+
+        public int getTrackTotalHits() {
+            return trackTotalHits;
+        }
+
+        public void setTrackTotalHits(int trackTotalHits) {
+            this.trackTotalHits = trackTotalHits;
+        }
+
+        public long getSeedRotationInSeconds() {
+            return seedRotationInSeconds;
+        }
+
+        public void setSeedRotationInSeconds(long seedRotationInSeconds) {
+            this.seedRotationInSeconds = seedRotationInSeconds;
+        }
+
+        public long getShuffleInSeconds() {
+            return shuffleInSeconds;
+        }
+
+        public void setShuffleInSeconds(long shuffleInSeconds) {
+            this.shuffleInSeconds = shuffleInSeconds;
+        }
+
+        public long getShuffleCheckDelay() {
+            return shuffleCheckDelay;
+        }
+
+        public void setShuffleCheckDelay(long shuffleCheckDelay) {
+            this.shuffleCheckDelay = shuffleCheckDelay;
+        }
+
+        public int getMaxSampleSize() {
+            return maxSampleSize;
+        }
+
+        public void setMaxSampleSize(int maxSampleSize) {
+            this.maxSampleSize = maxSampleSize;
+        }
+
+        public long getCacheTimeToLiveSeconds() {
+            return cacheTimeToLiveSeconds;
+        }
+
+        public void setCacheTimeToLiveSeconds(long cacheTimeToLiveSeconds) {
+            this.cacheTimeToLiveSeconds = cacheTimeToLiveSeconds;
+        }
+
+        public long getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(long cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+
+        public int getMaxMaterializedIds() {
+            return maxMaterializedIds;
+        }
+
+        public void setMaxMaterializedIds(int maxMaterializedIds) {
+            this.maxMaterializedIds = maxMaterializedIds;
+        }
+
+        public long getMaterializedIdsTimeToLiveSeconds() {
+            return materializedIdsTimeToLiveSeconds;
+        }
+
+        public void setMaterializedIdsTimeToLiveSeconds(long materializedIdsTimeToLiveSeconds) {
+            this.materializedIdsTimeToLiveSeconds = materializedIdsTimeToLiveSeconds;
+        }
+
+        public long getMaterializedIdsOffHeapMb() {
+            return materializedIdsOffHeapMb;
+        }
+
+        public void setMaterializedIdsOffHeapMb(long materializedIdsOffHeapMb) {
+            this.materializedIdsOffHeapMb = materializedIdsOffHeapMb;
+        }
+
+        public boolean isIdsOnly() {
+            return idsOnly;
+        }
+
+        public void setIdsOnly(boolean idsOnly) {
+            this.idsOnly = idsOnly;
+        }
+
+        public int getPromotedSlotInterval() {
+            return promotedSlotInterval;
+        }
+
+        public void setPromotedSlotInterval(int promotedSlotInterval) {
+            this.promotedSlotInterval = promotedSlotInterval;
+        }
+
+        public long getImpressionsFlushDelay() {
+            return impressionsFlushDelay;
+        }
+
+        public void setImpressionsFlushDelay(long impressionsFlushDelay) {
+            this.impressionsFlushDelay = impressionsFlushDelay;
+        }
+
+        public long getImpressionsScale() {
+            return impressionsScale;
+        }
+
+        public void setImpressionsScale(long impressionsScale) {
+            this.impressionsScale = impressionsScale;
+        }
+
+        public int getMaxQueryLength() {
+            return maxQueryLength;
+        }
+
+        public void setMaxQueryLength(int maxQueryLength) {
+            this.maxQueryLength = maxQueryLength;
+        }
+
+        public int getMaxQueryClauses() {
+            return maxQueryClauses;
+        }
+
+        public void setMaxQueryClauses(int maxQueryClauses) {
+            this.maxQueryClauses = maxQueryClauses;
+        }
+
+        public int getMaxRegexpLength() {
+            return maxRegexpLength;
+        }
+
+        public void setMaxRegexpLength(int maxRegexpLength) {
+            this.maxRegexpLength = maxRegexpLength;
+        }
+
+        public int getMaxFuzzyTerms() {
+            return maxFuzzyTerms;
+        }
+
+        public void setMaxFuzzyTerms(int maxFuzzyTerms) {
+            this.maxFuzzyTerms = maxFuzzyTerms;
+        }
+
+        public int getFuzzyPrefixLength() {
+            return fuzzyPrefixLength;
+        }
+
+        public void setFuzzyPrefixLength(int fuzzyPrefixLength) {
+            this.fuzzyPrefixLength = fuzzyPrefixLength;
+        }
+
+        public int getFuzzyMaxExpansions() {
+            return fuzzyMaxExpansions;
+        }
+
+        public void setFuzzyMaxExpansions(int fuzzyMaxExpansions) {
+            this.fuzzyMaxExpansions = fuzzyMaxExpansions;
+        }
+
+        public long getSearchTimeout() {
+            return searchTimeout;
+        }
+
+        public void setSearchTimeout(long searchTimeout) {
+            this.searchTimeout = searchTimeout;
+        }
+
+        public int getTerminateAfter() {
+            return terminateAfter;
+        }
+
+        public void setTerminateAfter(int terminateAfter) {
+            this.terminateAfter = terminateAfter;
+        }
+    }
+
+    public static class Reindex {
+
+        /**
+         * Number of rows read from the database and sent to Elasticsearch in each bulk request.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Number of threads reading and indexing a partition of the id range each.
+         */
+        private int workers = 1;
+
+        /**
+         * Maximum number of bulk requests sent to Elasticsearch at the same time, by all the workers.
+         */
+        private int bulkConcurrency = 1;
+
+        /**
+         * Number of times a bulk request rejected by Elasticsearch is sent again before the reindex fails.
+         */
+        private int maxRetries = 5;
+
+        /**
+         * Delay in milliseconds before sending again a rejected bulk request, doubled on each retry.
+         */
+        private long retryBackoff = 500;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getBulkConcurrency() {
+            return bulkConcurrency;
+        }
+
+        public void setBulkConcurrency(int bulkConcurrency) {
+            this.bulkConcurrency = bulkConcurrency;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public long getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(long retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+    }
+
+    public static class SearchOutbox {
+
+        /**
+         * Number of changes sent to Elasticsearch in each transaction.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Delay in milliseconds between the end of a run sending the changes and the start of the next one.
+         */
+        private long drainDelay = 1000;
+
+        /**
+         * Failed sends of a change after which it is parked: kept in the table with its last error, and no longer sent.
+         */
+        private int maxAttempts = 10;
+
+        /**
+         * Time in seconds a node keeps the exclusive right to send the changes, renewed before each batch:
+         * another node takes over when it expires, so it must be longer than sending a batch.
+         */
+        private long leaseInSeconds = 60;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getDrainDelay() {
+            return drainDelay;
+        }
+
+        public void setDrainDelay(long drainDelay) {
+            this.drainDelay = drainDelay;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getLeaseInSeconds() {
+            return leaseInSeconds;
+        }
+
+        public void setLeaseInSeconds(long leaseInSeconds) {
+            this.leaseInSeconds = leaseInSeconds;
+        }
+    }
+
+    public static class RestClient {
+
+        /**
+         * Send the Elasticsearch requests with the low-level REST client instead of the Jest HTTP client.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of connections, to all the nodes.
+         */
+        private int maxConnections = 100;
+
+        /**
+         * Maximum number of connections to each node.
+         */
+        private int maxConnectionsPerRoute = 30;
+
+        /**
+         * Duration in milliseconds an idle connection is kept open to be reused.
+         */
+        private long keepAlive = 60000;
+
+        /**
+         * Timeout in milliseconds waiting for the data of a response.
+         */
+        private int socketTimeout = 30000;
+
+        /**
+         * Compress the request bodies, and accept compressed responses.
+         */
+        private boolean compression = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public long getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public int getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        public boolean isCompression() {
+            return compression;
+        }
+
+        public void setCompression(boolean compression) {
+            this.compression = compression;
+        }
+    }
 }
@@ -26,8 +26,11 @@ public class AsyncConfiguration implements AsyncConfigurer, SchedulingConfigurer
 
     private final JHipsterProperties jHipsterProperties;
 
-    public AsyncConfiguration(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    public AsyncConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
@@ -42,6 +45,19 @@ public class AsyncConfiguration implements AsyncConfigurer, SchedulingConfigurer
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    /**
+     * Workers indexing the id range partitions of a reindex, one thread per configured worker.
+     */
+    @Bean(name = "reindexExecutor")
+    public ThreadPoolTaskExecutor reindexExecutor() {
+        int workers = Math.max(applicationProperties.getReindex().getWorkers(), 1);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setThreadNamePrefix("randomize-paginate-elasticsearch-Reindex-");
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
@@ -3,6 +3,7 @@ package tech.ippon.hlegrand.config;
 import java.time.Duration;
 
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.jsr107.Eh107Configuration;
 
 import io.github.jhipster.config.jcache.BeanClassLoaderAwareJCacheRegionFactory;
@@ -16,9 +17,15 @@ import org.springframework.context.annotation.*;
 @EnableCaching
 public class CacheConfiguration {
 
+    private static final long SEARCH_IDS_HEAP_ENTRIES = 10;
+
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
+    private final javax.cache.configuration.Configuration<Object, Object> searchResultsConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> searchIdsConfiguration;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         BeanClassLoaderAwareJCacheRegionFactory.setBeanClassLoader(this.getClass().getClassLoader());
         JHipsterProperties.Cache.Ehcache ehcache =
             jHipsterProperties.getCache().getEhcache();
@@ -28,6 +35,19 @@ public class CacheConfiguration {
                 ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
                 .build());
+
+        ApplicationProperties.Search search = applicationProperties.getSearch();
+        searchResultsConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(search.getCacheMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(search.getCacheTimeToLiveSeconds())))
+                .build());
+        // The id lists are large and serializable: only the most used stay on heap, the others are kept off-heap
+        searchIdsConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(SEARCH_IDS_HEAP_ENTRIES).offheap(search.getMaterializedIdsOffHeapMb(), MemoryUnit.MB))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(search.getMaterializedIdsTimeToLiveSeconds())))
+                .build());
     }
 
     @Bean
@@ -39,6 +59,8 @@ public class CacheConfiguration {
             cm.createCache(tech.ippon.hlegrand.domain.Authority.class.getName(), jcacheConfiguration);
             cm.createCache(tech.ippon.hlegrand.domain.User.class.getName() + ".authorities", jcacheConfiguration);
             cm.createCache(tech.ippon.hlegrand.domain.Animal.class.getName(), jcacheConfiguration);
+            cm.createCache(tech.ippon.hlegrand.service.AnimalSearchCacheService.SEARCH_RESULTS_CACHE, searchResultsConfiguration);
+            cm.createCache(tech.ippon.hlegrand.service.AnimalSearchCacheService.SEARCH_IDS_CACHE, searchIdsConfiguration);
             // jhipster-needle-ehcache-add-entry
         };
     }
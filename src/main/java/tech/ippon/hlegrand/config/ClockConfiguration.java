@@ -0,0 +1,18 @@
+package tech.ippon.hlegrand.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * Provide the clock of the services computing values from the current time, which the tests can fix.
+ */
+@Configuration
+public class ClockConfiguration {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+}
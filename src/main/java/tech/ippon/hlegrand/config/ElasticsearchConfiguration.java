@@ -1,11 +1,17 @@
 package tech.ippon.hlegrand.config;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.vanroy.springboot.autoconfigure.data.jest.ElasticsearchJestProperties;
 import com.github.vanroy.springdata.jest.JestElasticsearchTemplate;
 import com.github.vanroy.springdata.jest.mapper.DefaultJestResultsMapper;
 import io.searchbox.client.JestClient;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.elasticsearch.ElasticsearchProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -17,11 +23,15 @@ import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverte
 import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 
 @Configuration
-@EnableConfigurationProperties(ElasticsearchProperties.class)
+@EnableConfigurationProperties({ElasticsearchProperties.class, ElasticsearchJestProperties.class})
 public class ElasticsearchConfiguration {
 
+    private static final String DEFAULT_URI = "http://localhost:9200";
+
     private ObjectMapper mapper;
 
     public ElasticsearchConfiguration(ObjectMapper mapper) {
@@ -29,10 +39,45 @@ public class ElasticsearchConfiguration {
     }
 
     @Bean
-    public EntityMapper getEntityMapper() {
+    public CustomEntityMapper getEntityMapper() {
         return new CustomEntityMapper(mapper);
     }
 
+    /**
+     * Elasticsearch low-level REST client, with a pool of keep-alive connections.
+     * <p>
+     * It connects to the comma separated nodes of the Jest uri property, spring.data.jest.uri.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "application.rest-client", name = "enabled")
+    public RestClient restClient(ElasticsearchJestProperties jestProperties, ApplicationProperties applicationProperties) {
+        ApplicationProperties.RestClient properties = applicationProperties.getRestClient();
+        String uri = jestProperties.getUri() != null ? jestProperties.getUri() : DEFAULT_URI;
+        HttpHost[] hosts = Arrays.stream(uri.split(","))
+            .map(String::trim)
+            .map(HttpHost::create)
+            .toArray(HttpHost[]::new);
+        return RestClient.builder(hosts)
+            .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                .setKeepAliveStrategy((response, context) -> properties.getKeepAlive()))
+            .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                .setSocketTimeout(properties.getSocketTimeout()))
+            .setMaxRetryTimeoutMillis(properties.getSocketTimeout())
+            .build();
+    }
+
+    /**
+     * Jest client sending the requests with the REST client, it replaces the one of the Jest auto-configuration
+     * so that the Elasticsearch template and the repositories use it.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "application.rest-client", name = "enabled")
+    public JestClient restClientJestClient(RestClient restClient, ApplicationProperties applicationProperties) {
+        return new RestClientJestClient(restClient, applicationProperties.getRestClient().isCompression());
+    }
+
     @Bean
     @Primary
     public ElasticsearchOperations elasticsearchTemplate(final JestClient jestClient,
@@ -45,17 +90,24 @@ public class ElasticsearchConfiguration {
             new DefaultJestResultsMapper(simpleElasticsearchMappingContext, mapper));
     }
 
-    public class CustomEntityMapper implements EntityMapper {
+    /**
+     * Maps the entities to Elasticsearch documents, with its own copy of the application ObjectMapper:
+     * the modules are the same, the configuration specific to Elasticsearch does not leak to the REST API.
+     * <p>
+     * Besides the String methods used by Spring Data, the documents can be written to trees, to add the fields
+     * which are not on the entities.
+     */
+    public static class CustomEntityMapper implements EntityMapper {
 
-        private ObjectMapper objectMapper;
+        private final ObjectMapper objectMapper;
 
         public CustomEntityMapper(ObjectMapper objectMapper) {
-            this.objectMapper = objectMapper;
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            objectMapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
-            objectMapper.configure(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS, true);
-            objectMapper.configure(SerializationFeature.INDENT_OUTPUT, false);
-            objectMapper.configure(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS, true);
+            this.objectMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true)
+                .configure(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS, true)
+                .configure(SerializationFeature.INDENT_OUTPUT, false)
+                .configure(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS, true);
         }
 
         @Override
@@ -67,6 +119,31 @@ public class ElasticsearchConfiguration {
         public <T> T mapToObject(String source, Class<T> clazz) throws IOException {
             return objectMapper.readValue(source, clazz);
         }
+
+        /**
+         * Map an entity to a JSON tree, to add fields which are not on the entity before sending it.
+         */
+        public ObjectNode mapToTree(Object object) {
+            return objectMapper.valueToTree(object);
+        }
+
+        /**
+         * Read a response of Elasticsearch as a JSON tree, straight from its stream.
+         */
+        public JsonNode readTree(InputStream content) throws IOException {
+            return objectMapper.readTree(content);
+        }
+
+        public JsonNode readTree(String content) throws IOException {
+            return objectMapper.readTree(content);
+        }
+
+        /**
+         * Map a JSON tree read from a response, such as the source of a hit, to an entity.
+         */
+        public <T> T treeToValue(JsonNode tree, Class<T> clazz) throws IOException {
+            return objectMapper.treeToValue(tree, clazz);
+        }
     }
 
 }
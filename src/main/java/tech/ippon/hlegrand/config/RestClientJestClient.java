@@ -0,0 +1,219 @@
+package tech.ippon.hlegrand.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.searchbox.action.Action;
+import io.searchbox.client.AbstractJestClient;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jest client sending the actions with the Elasticsearch low-level REST client.
+ * <p>
+ * The Jest actions and results, and so the JestElasticsearchTemplate and the repositories, are unchanged:
+ * only the transport is replaced, by the pooled and keep-alive connections of the REST client.
+ * The request bodies can be compressed, and the compressed responses are decompressed.
+ * The responses of the Jest actions are parsed with Gson, the callers reading a response with another parser
+ * get it as a stream instead.
+ */
+public class RestClientJestClient implements JestClient {
+
+    private static final String GZIP = "gzip";
+
+    private final RestClient restClient;
+
+    private final boolean compression;
+
+    private final Gson gson = new GsonBuilder()
+        .setDateFormat(AbstractJestClient.ELASTIC_SEARCH_DATE_FORMAT)
+        .create();
+
+    /**
+     * Reader of a response body, from the stream of the response.
+     *
+     * @param <T> the type of the response read
+     */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+
+        T read(InputStream content) throws IOException;
+    }
+
+    public RestClientJestClient(RestClient restClient, boolean compression) {
+        this.restClient = restClient;
+        this.compression = compression;
+    }
+
+    /**
+     * Execute an action and read its response body straight from the stream of the response, instead of copying it
+     * to a String parsed by the action with Gson.
+     *
+     * @param action the action to execute
+     * @param reader the reader of the response body, which is decompressed
+     * @param <T>    the type of the response read
+     * @return the response read
+     * @throws IOException if the request or the reader failed, a {@link ResponseException} when Elasticsearch
+     *                     answered with an HTTP error
+     */
+    public <T> T execute(Action<?> action, ResponseReader<T> reader) throws IOException {
+        Response response = restClient.performRequest(action.getRestMethodName(), endpoint(action), Collections.emptyMap(),
+            entity(action), headers(action));
+        HttpEntity entity = content(response);
+        if (entity == null) {
+            throw new IOException("Empty response to " + action.getRestMethodName() + " " + action.getURI());
+        }
+        try (InputStream content = entity.getContent()) {
+            return reader.read(content);
+        }
+    }
+
+    @Override
+    public <T extends JestResult> T execute(Action<T> action) throws IOException {
+        Response response;
+        try {
+            response = restClient.performRequest(action.getRestMethodName(), endpoint(action), Collections.emptyMap(),
+                entity(action), headers(action));
+        } catch (ResponseException e) {
+            // Jest reports the HTTP errors in the result, not as exceptions
+            response = e.getResponse();
+        }
+        return result(action, response);
+    }
+
+    @Override
+    public <T extends JestResult> void executeAsync(Action<T> action, JestResultHandler<? super T> resultHandler) {
+        ResponseListener listener = new ResponseListener() {
+
+            @Override
+            public void onSuccess(Response response) {
+                handle(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                if (exception instanceof ResponseException) {
+                    handle(((ResponseException) exception).getResponse());
+                } else {
+                    resultHandler.failed(exception);
+                }
+            }
+
+            private void handle(Response response) {
+                T result;
+                try {
+                    result = result(action, response);
+                } catch (IOException e) {
+                    resultHandler.failed(e);
+                    return;
+                }
+                resultHandler.completed(result);
+            }
+        };
+        try {
+            restClient.performRequestAsync(action.getRestMethodName(), endpoint(action), Collections.emptyMap(),
+                entity(action), listener, headers(action));
+        } catch (UncheckedIOException e) {
+            resultHandler.failed(e.getCause());
+        }
+    }
+
+    @Override
+    public void setServers(Set<String> servers) {
+        restClient.setHosts(servers.stream().map(HttpHost::create).toArray(HttpHost[]::new));
+    }
+
+    /**
+     * @deprecated use {@link #close()}
+     */
+    @Override
+    @Deprecated
+    public void shutdownClient() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        restClient.close();
+    }
+
+    private String endpoint(Action<?> action) {
+        String uri = action.getURI();
+        return uri.startsWith("/") ? uri : "/" + uri;
+    }
+
+    private HttpEntity entity(Action<?> action) {
+        String data = action.getData(gson);
+        if (data == null) {
+            return null;
+        }
+        if (!compression) {
+            return new NStringEntity(data, ContentType.APPLICATION_JSON);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(data.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(bytes.toByteArray(), ContentType.APPLICATION_JSON);
+        entity.setContentEncoding(GZIP);
+        return entity;
+    }
+
+    private Header[] headers(Action<?> action) {
+        List<Header> headers = new ArrayList<>();
+        action.getHeaders().forEach((name, value) -> headers.add(new BasicHeader(name, value.toString())));
+        if (compression) {
+            headers.add(new BasicHeader(HttpHeaders.ACCEPT_ENCODING, GZIP));
+        }
+        return headers.toArray(new Header[0]);
+    }
+
+    private <T extends JestResult> T result(Action<T> action, Response response) throws IOException {
+        HttpEntity entity = content(response);
+        String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+        return action.createNewElasticSearchResult(body, response.getStatusLine().getStatusCode(),
+            response.getStatusLine().getReasonPhrase(), gson);
+    }
+
+    /**
+     * The response entity, decompressed when Elasticsearch compressed it, or null when there is none.
+     */
+    private static HttpEntity content(Response response) {
+        HttpEntity entity = response.getEntity();
+        if (entity != null && GZIP.equalsIgnoreCase(response.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            return new GzipDecompressingEntity(entity);
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,95 @@
+package tech.ippon.hlegrand.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The number of times an animal was served by a search.
+ * <p>
+ * The counts are kept apart from the animal, so that writing them neither changes the animal
+ * nor evicts it from the second-level cache. They are only written in batches, by the ImpressionService.
+ * The shuffled count is a copy of the count taken by the RandomRankService at each shuffle: the searches
+ * score with it, so that the order of a listing does not change while it is paged through.
+ */
+@Entity
+@Table(name = "animal_impression")
+public class AnimalImpression implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "animal_id")
+    private Long animalId;
+
+    @NotNull
+    @Column(name = "impressions", nullable = false)
+    private Long impressions;
+
+    @NotNull
+    @Column(name = "shuffled_impressions", nullable = false)
+    private Long shuffledImpressions = 0L;
+
+    public AnimalImpression() {
+        // Empty constructor needed for Hibernate.
+    }
+
+    public AnimalImpression(Long animalId, Long impressions) {
+        this.animalId = animalId;
+        this.impressions = impressions;
+    }
+
+    public Long getAnimalId() {
+        return animalId;
+    }
+
+    public void setAnimalId(Long animalId) {
+        this.animalId = animalId;
+    }
+
+    public Long getImpressions() {
+        return impressions;
+    }
+
+    public void setImpressions(Long impressions) {
+        this.impressions = impressions;
+    }
+
+    public Long getShuffledImpressions() {
+        return shuffledImpressions;
+    }
+
+    public void setShuffledImpressions(Long shuffledImpressions) {
+        this.shuffledImpressions = shuffledImpressions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AnimalImpression animalImpression = (AnimalImpression) o;
+        if (animalImpression.getAnimalId() == null || getAnimalId() == null) {
+            return false;
+        }
+        return Objects.equals(getAnimalId(), animalImpression.getAnimalId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getAnimalId());
+    }
+
+    @Override
+    public String toString() {
+        return "AnimalImpression{" +
+            "animalId=" + getAnimalId() +
+            ", impressions=" + getImpressions() +
+            ", shuffledImpressions=" + getShuffledImpressions() +
+            "}";
+    }
+}
@@ -0,0 +1,88 @@
+package tech.ippon.hlegrand.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The last shuffle generation claimed by a node, in a single row.
+ * <p>
+ * The node updating the row to a new generation is the only one rewriting the random ranks for it,
+ * the other nodes see the generation is already claimed.
+ */
+@Entity
+@Table(name = "random_rank_shuffle")
+public class RandomRankShuffle implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The id of the single row.
+     */
+    public static final Long ID = 1L;
+
+    @Id
+    private Long id;
+
+    @NotNull
+    @Column(name = "generation", nullable = false)
+    private Long generation;
+
+    @Column(name = "claimed_date")
+    private Instant claimedDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
+    public Instant getClaimedDate() {
+        return claimedDate;
+    }
+
+    public void setClaimedDate(Instant claimedDate) {
+        this.claimedDate = claimedDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RandomRankShuffle randomRankShuffle = (RandomRankShuffle) o;
+        if (randomRankShuffle.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), randomRankShuffle.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "RandomRankShuffle{" +
+            "id=" + getId() +
+            ", generation=" + getGeneration() +
+            ", claimedDate='" + getClaimedDate() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,141 @@
+package tech.ippon.hlegrand.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A change of an entity which is not yet copied to Elasticsearch.
+ * <p>
+ * It is written in the transaction changing the entity, so that the change can not be lost, and only references
+ * the entity: its current state is read from the database when the event is sent to Elasticsearch.
+ * An event which failed too many times is parked: it stays in the table with its last error, and is no longer sent.
+ */
+@Entity
+@Table(name = "search_outbox_event")
+public class SearchOutboxEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum EntityType {
+        ANIMAL, USER
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", length = 20, nullable = false)
+    private EntityType entityType;
+
+    @NotNull
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    @NotNull
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Size(max = 255)
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    public SearchOutboxEvent() {
+        // Empty constructor needed for Hibernate.
+    }
+
+    public SearchOutboxEvent(EntityType entityType, Long entityId) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(EntityType entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchOutboxEvent searchOutboxEvent = (SearchOutboxEvent) o;
+        if (searchOutboxEvent.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), searchOutboxEvent.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOutboxEvent{" +
+            "id=" + getId() +
+            ", entityType=" + getEntityType() +
+            ", entityId=" + getEntityId() +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", attempts=" + getAttempts() +
+            ", lastError='" + getLastError() + "'" +
+            "}";
+    }
+}
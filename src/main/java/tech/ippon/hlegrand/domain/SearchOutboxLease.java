@@ -0,0 +1,88 @@
+package tech.ippon.hlegrand.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The node sending the outbox changes to Elasticsearch, in a single row.
+ * <p>
+ * The node holding the lease is the only one sending the changes until it expires, so that two nodes
+ * never send the same changes, nor the states of an entity in a different order than they were read.
+ */
+@Entity
+@Table(name = "search_outbox_lease")
+public class SearchOutboxLease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The id of the single row.
+     */
+    public static final Long ID = 1L;
+
+    @Id
+    private Long id;
+
+    @Size(max = 36)
+    @Column(name = "owner", length = 36)
+    private String owner;
+
+    @Column(name = "leased_until")
+    private Instant leasedUntil;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getLeasedUntil() {
+        return leasedUntil;
+    }
+
+    public void setLeasedUntil(Instant leasedUntil) {
+        this.leasedUntil = leasedUntil;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchOutboxLease searchOutboxLease = (SearchOutboxLease) o;
+        if (searchOutboxLease.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), searchOutboxLease.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOutboxLease{" +
+            "id=" + getId() +
+            ", owner='" + getOwner() + "'" +
+            ", leasedUntil='" + getLeasedUntil() + "'" +
+            "}";
+    }
+}
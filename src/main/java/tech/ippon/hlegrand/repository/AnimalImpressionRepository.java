@@ -0,0 +1,23 @@
+package tech.ippon.hlegrand.repository;
+
+import tech.ippon.hlegrand.domain.AnimalImpression;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the AnimalImpression entity.
+ */
+@Repository
+public interface AnimalImpressionRepository extends JpaRepository<AnimalImpression, Long>, AnimalImpressionRepositoryCustom {
+
+    /**
+     * Copy the count of every animal to its shuffled count, the one the searches score with until the next shuffle.
+     *
+     * @return the number of rows updated
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update AnimalImpression impression set impression.shuffledImpressions = impression.impressions")
+    int snapshotImpressions();
+}
@@ -0,0 +1,20 @@
+package tech.ippon.hlegrand.repository;
+
+import java.util.Map;
+
+/**
+ * Writes on the AnimalImpression entity which are not available through Spring Data.
+ */
+public interface AnimalImpressionRepositoryCustom {
+
+    /**
+     * Add impressions to the counts of the animals in one batch, inserting the counts missing from the database.
+     * <p>
+     * Each row is inserted or updated by a single statement, so that the nodes flushing the same new animal
+     * at the same time add up their counts instead of failing on the primary key.
+     * The persistence context is cleared, so that the counts read next are the updated ones.
+     *
+     * @param counts the impressions to add, by animal id
+     */
+    void addImpressions(Map<Long, Long> counts);
+}
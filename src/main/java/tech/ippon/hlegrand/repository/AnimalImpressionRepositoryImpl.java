@@ -0,0 +1,51 @@
+package tech.ippon.hlegrand.repository;
+
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.vendor.Database;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batched upserts of the impressions, with the statement of the configured database.
+ */
+public class AnimalImpressionRepositoryImpl implements AnimalImpressionRepositoryCustom {
+
+    private static final String POSTGRESQL_UPSERT = "insert into animal_impression (animal_id, impressions, shuffled_impressions) " +
+        "values (?, ?, 0) " +
+        "on conflict (animal_id) do update set impressions = animal_impression.impressions + excluded.impressions";
+
+    private static final String H2_UPSERT = "merge into animal_impression (animal_id, impressions, shuffled_impressions) " +
+        "key (animal_id) " +
+        "select counted.animal_id, coalesce(impression.impressions, 0) + counted.impressions, " +
+        "coalesce(impression.shuffled_impressions, 0) " +
+        "from (select cast(? as bigint) as animal_id, cast(? as bigint) as impressions) counted " +
+        "left join animal_impression impression on impression.animal_id = counted.animal_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String upsert;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public AnimalImpressionRepositoryImpl(JdbcTemplate jdbcTemplate, JpaProperties jpaProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        // H2 has no "on conflict" clause, its merge is only used by the development and test databases
+        this.upsert = jpaProperties.getDatabase() == Database.POSTGRESQL ? POSTGRESQL_UPSERT : H2_UPSERT;
+    }
+
+    @Override
+    public void addImpressions(Map<Long, Long> counts) {
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((animalId, count) -> rows.add(new Object[]{animalId, count}));
+        // The statements run on the connection of the current transaction, after the pending entity changes
+        entityManager.flush();
+        jdbcTemplate.batchUpdate(upsert, rows);
+        entityManager.clear();
+    }
+}
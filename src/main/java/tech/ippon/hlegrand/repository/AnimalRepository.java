@@ -1,9 +1,14 @@
 package tech.ippon.hlegrand.repository;
 
 import tech.ippon.hlegrand.domain.Animal;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 
 /**
  * Spring Data  repository for the Animal entity.
@@ -12,4 +17,32 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface AnimalRepository extends JpaRepository<Animal, Long> {
 
+    /*
+     * Keyset pagination: these queries seek on the primary key instead of using an OFFSET, and return
+     * a Slice so that no count query is issued. The Pageable should only hold the size and the sort on id.
+     */
+
+    Slice<Animal> findAllBy(Pageable pageable);
+
+    Slice<Animal> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    Slice<Animal> findAllByIdLessThan(Long id, Pageable pageable);
+
+    Slice<Animal> findAllByIdBetween(Long minId, Long maxId, Pageable pageable);
+
+    @Query("select min(animal.id) from Animal animal")
+    Long findMinId();
+
+    @Query("select max(animal.id) from Animal animal")
+    Long findMaxId();
+
+    @Query("select animal.id from Animal animal where animal.id > :id order by animal.id")
+    List<Long> findIdsGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * The ids in order, from the offset of the Pageable: a rank is resolved to its id by skipping the ids before it
+     * in the primary key index, without reading the rows.
+     */
+    @Query("select animal.id from Animal animal order by animal.id")
+    List<Long> findIds(Pageable pageable);
 }
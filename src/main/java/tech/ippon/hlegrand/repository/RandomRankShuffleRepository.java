@@ -0,0 +1,39 @@
+package tech.ippon.hlegrand.repository;
+
+import tech.ippon.hlegrand.domain.RandomRankShuffle;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Spring Data JPA repository for the RandomRankShuffle entity.
+ */
+@Repository
+public interface RandomRankShuffleRepository extends JpaRepository<RandomRankShuffle, Long> {
+
+    /**
+     * Claim a shuffle generation, unless it or a later one is already claimed.
+     *
+     * @return the number of rows updated, 1 when the generation was claimed by this call
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update RandomRankShuffle shuffle set shuffle.generation = :generation, shuffle.claimedDate = :claimedDate " +
+        "where shuffle.id = :id and shuffle.generation < :generation")
+    int claim(@Param("id") Long id, @Param("generation") long generation, @Param("claimedDate") Instant claimedDate);
+
+    /**
+     * Give back a claimed generation which could not be shuffled, so that it is claimed again.
+     *
+     * @param generation         the claimed generation
+     * @param previousGeneration the generation to restore, before the claimed one
+     * @return the number of rows updated, 0 when a later generation was claimed meanwhile
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update RandomRankShuffle shuffle set shuffle.generation = :previousGeneration, shuffle.claimedDate = null " +
+        "where shuffle.id = :id and shuffle.generation = :generation")
+    int release(@Param("id") Long id, @Param("generation") long generation, @Param("previousGeneration") long previousGeneration);
+}
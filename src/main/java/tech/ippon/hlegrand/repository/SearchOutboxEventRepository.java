@@ -0,0 +1,17 @@
+package tech.ippon.hlegrand.repository;
+
+import tech.ippon.hlegrand.domain.SearchOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the SearchOutboxEvent entity.
+ */
+@Repository
+public interface SearchOutboxEventRepository extends JpaRepository<SearchOutboxEvent, Long> {
+
+    List<SearchOutboxEvent> findAllByAttemptsLessThanOrderByIdAsc(Integer maxAttempts, Pageable pageable);
+}
@@ -0,0 +1,40 @@
+package tech.ippon.hlegrand.repository;
+
+import tech.ippon.hlegrand.domain.SearchOutboxLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Spring Data JPA repository for the SearchOutboxLease entity.
+ * <p>
+ * The lease is only read and written by these updates: they do not clear the persistence context, which would
+ * discard the changes of the calling transaction not yet flushed.
+ */
+@Repository
+public interface SearchOutboxLeaseRepository extends JpaRepository<SearchOutboxLease, Long> {
+
+    /**
+     * Claim or renew the lease, unless another owner holds it and it has not expired.
+     *
+     * @return the number of rows updated, 1 when the lease is held by the owner until the given date
+     */
+    @Modifying
+    @Query("update SearchOutboxLease lease set lease.owner = :owner, lease.leasedUntil = :leasedUntil " +
+        "where lease.id = :id and (lease.owner = :owner or lease.leasedUntil is null or lease.leasedUntil < :now)")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") Instant now,
+              @Param("leasedUntil") Instant leasedUntil);
+
+    /**
+     * Give back the lease, so that another node can claim it without waiting for its expiry.
+     *
+     * @return the number of rows updated, 0 when another owner claimed the lease meanwhile
+     */
+    @Modifying
+    @Query("update SearchOutboxLease lease set lease.leasedUntil = null where lease.id = :id and lease.owner = :owner")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+}
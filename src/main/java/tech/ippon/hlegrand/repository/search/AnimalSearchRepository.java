@@ -6,5 +6,5 @@ import org.springframework.data.elasticsearch.repository.ElasticsearchRepository
 /**
  * Spring Data Elasticsearch repository for the Animal entity.
  */
-public interface AnimalSearchRepository extends ElasticsearchRepository<Animal, Long> {
+public interface AnimalSearchRepository extends ElasticsearchRepository<Animal, Long>, AnimalSearchRepositoryCustom {
 }
@@ -0,0 +1,154 @@
+package tech.ippon.hlegrand.repository.search;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import tech.ippon.hlegrand.domain.Animal;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Elasticsearch requests on the Animal index which are not available through Spring Data.
+ */
+public interface AnimalSearchRepositoryCustom {
+
+    /**
+     * The field of the documents holding the random rank of the last shuffle.
+     */
+    String RANDOM_RANK_FIELD = "randomRank";
+
+    /**
+     * Search for the animals sorted by score then id, starting after or before the given sort values.
+     *
+     * @param query          the query of the search
+     * @param size           the number of animals to return
+     * @param trackTotalHits the number of hits above which the total is only a lower bound
+     * @param score          the score of the animal the page starts from, or null for the first page
+     * @param id             the id of the animal the page starts from, or null for the first page
+     * @param backward       true for the animals preceding the sort values, false for the ones following them
+     * @param preference     the shard copies preference of a deterministic search, or null
+     * @return the animals following or preceding the sort values, in the order of the listing
+     */
+    SearchAfterPage<Animal> searchAfter(QueryBuilder query, int size, int trackTotalHits, Float score, Long id,
+                                        boolean backward, String preference);
+
+    /**
+     * Search for a page of the animals, sent to the same shard copies for the same preference.
+     * <p>
+     * With a preference, the search must be deterministic: its results are kept in the shard request cache.
+     * Without one, each shard stops collecting after the terminate-after property hits, and the search fails with a
+     * {@link SearchTimeoutException} after the search-timeout property.
+     *
+     * @param query      the query of the search
+     * @param pageable   the pagination information, an {@link OffsetPageRequest} for a range not starting on a page
+     * @param preference the shard copies preference, or null
+     * @return the page of animals, whose total is a lower bound when a shard stopped collecting
+     */
+    SearchPage<Animal> search(QueryBuilder query, Pageable pageable, String preference);
+
+    /**
+     * Search for the ids of the animals matching the query, sorted by score then id, starting after the
+     * given sort values, without fetching their documents.
+     *
+     * @param query      the query of the search
+     * @param size       the number of ids to return
+     * @param score      the score of the animal the ids start after, or null for the first ids
+     * @param id         the id of the animal the ids start after, or null for the first ids
+     * @param preference the shard copies preference of a deterministic search, or null
+     * @return the ids of the animals in order, with the total number of hits
+     */
+    SearchIds searchIds(QueryBuilder query, int size, Float score, Long id, String preference);
+
+    /**
+     * Search for a page of ids of the animals matching the query, without fetching their documents.
+     * Each shard stops collecting after the terminate-after property hits, and the search fails with a
+     * {@link SearchTimeoutException} after the search-timeout property.
+     *
+     * @param query    the query of the search
+     * @param pageable the pagination information, sorted by score when it has no sort
+     * @return the page of ids, whose total is a lower bound when a shard stopped collecting
+     */
+    SearchPage<Long> searchIds(QueryBuilder query, Pageable pageable);
+
+    /**
+     * Search for the animals in the order of the last shuffle, sorted by their random rank then id.
+     * The animals not yet ranked come last.
+     * <p>
+     * The order only changes with the shuffle, so the pages of a shuffle are sent to the same shard copies
+     * and kept in their request cache: like the other searches with a preference, it collects every hit
+     * and has no timeout, so the cached pages and totals are complete.
+     *
+     * @param query      the query of the search
+     * @param pageable   the pagination information, its sort is ignored
+     * @param preference the shard copies preference of the current shuffle
+     * @return the page of animals
+     */
+    Page<Animal> searchShuffled(QueryBuilder query, Pageable pageable, String preference);
+
+    /**
+     * Create a new version of the index, with the mapping of the live one, to reindex all the animals
+     * without disturbing the searches. The new index is not refreshed nor replicated until it is published.
+     *
+     * @return the name of the new index
+     */
+    String createIndexVersion();
+
+    /**
+     * Index the animals in a single bulk request, without refreshing the index.
+     * The documents hold the random rank of the current shuffle and the impressions of the animals at that shuffle.
+     * An animal already written to the index by {@link #indexAll(List)} or {@link #deleteAllById(Collection)}
+     * is left as is: it was read from the database after the reindex started.
+     * <p>
+     * The animals rejected because Elasticsearch is overloaded (HTTP 429) are returned to be sent again later,
+     * any other failure throws an {@link org.springframework.data.elasticsearch.ElasticsearchException}.
+     *
+     * @param indexName the name of the index, as returned by {@link #createIndexVersion()}
+     * @param animals   the animals to index
+     * @return the animals rejected by Elasticsearch, empty when all were indexed
+     */
+    List<Animal> bulkIndex(String indexName, List<Animal> animals);
+
+    /**
+     * Index the animals in the live index, and in the new versions of the index being reindexed,
+     * in one bulk request per index.
+     *
+     * @param animals the animals to index
+     */
+    void indexAll(List<Animal> animals);
+
+    /**
+     * Delete the animals from the live index, and from the new versions of the index being reindexed,
+     * in a single bulk request.
+     *
+     * @param ids the ids of the animals
+     */
+    void deleteAllById(Collection<Long> ids);
+
+    /**
+     * Update the random rank of the animals to the one of a shuffle, and their impressions to the ones
+     * counted at that shuffle, in a single bulk request.
+     *
+     * @param ids         the ids of the animals
+     * @param generation  the generation of the shuffle
+     * @param impressions the number of impressions of the animals at the shuffle, by id, absent when never counted
+     */
+    void updateRandomRanks(List<Long> ids, long generation, Map<Long, Long> impressions);
+
+    /**
+     * Restore the settings of the live index on the new one, switch the alias to it atomically
+     * and delete the previous versions.
+     *
+     * @param indexName the name of the index, as returned by {@link #createIndexVersion()}
+     */
+    void publishIndexVersion(String indexName);
+
+    /**
+     * Delete a version of the index which was not published, after its reindex failed, so that the outbox
+     * stops writing the changes to it.
+     *
+     * @param indexName the name of the index, as returned by {@link #createIndexVersion()}
+     */
+    void deleteIndexVersion(String indexName);
+}
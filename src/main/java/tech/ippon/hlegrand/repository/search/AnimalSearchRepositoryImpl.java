@@ -0,0 +1,638 @@
+package tech.ippon.hlegrand.repository.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Search;
+import io.searchbox.core.Update;
+import io.searchbox.indices.CreateIndex;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.aliases.AddAliasMapping;
+import io.searchbox.indices.aliases.AliasMapping;
+import io.searchbox.indices.aliases.GetAliases;
+import io.searchbox.indices.aliases.ModifyAliases;
+import io.searchbox.indices.aliases.RemoveAliasMapping;
+import io.searchbox.indices.mapping.GetMapping;
+import io.searchbox.indices.settings.GetSettings;
+import io.searchbox.indices.settings.UpdateSettings;
+import io.searchbox.params.Parameters;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import tech.ippon.hlegrand.config.ApplicationProperties;
+import tech.ippon.hlegrand.config.ElasticsearchConfiguration.CustomEntityMapper;
+import tech.ippon.hlegrand.config.RestClientJestClient;
+import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.AnimalImpression;
+import tech.ippon.hlegrand.repository.AnimalImpressionRepository;
+import tech.ippon.hlegrand.service.util.RandomUtil;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of {@link AnimalSearchRepositoryCustom}, sending the requests with the Jest client.
+ * The search responses are read with Jackson, so that the sources of the hits are mapped from their tree.
+ */
+public class AnimalSearchRepositoryImpl implements AnimalSearchRepositoryCustom {
+
+    private static final String VERSION_SEPARATOR = "_v";
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int CONFLICT = 409;
+
+    /**
+     * External version of the documents written by a reindex: any document already written to the new
+     * index by the outbox, or deleted by it, has a greater version and is kept.
+     */
+    private static final long REINDEX_VERSION = 1L;
+
+    /**
+     * Time a deleted document of a new index keeps its version, which must outlast the chunks read before the delete.
+     */
+    private static final String REINDEX_GC_DELETES = "1h";
+
+    private static final String IMPRESSIONS_FIELD = "impressions";
+
+    private static final String PREFERENCE = "preference";
+
+    private static final String REQUEST_CACHE = "request_cache";
+
+    private static final String TIMED_OUT = "timed_out";
+
+    private static final String TERMINATED_EARLY = "terminated_early";
+
+    private static final String SORT = "sort";
+
+    private final Logger log = LoggerFactory.getLogger(AnimalSearchRepositoryImpl.class);
+
+    private final JestClient jestClient;
+
+    private final CustomEntityMapper entityMapper;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final AnimalImpressionRepository animalImpressionRepository;
+
+    private final Clock clock;
+
+    public AnimalSearchRepositoryImpl(JestClient jestClient, CustomEntityMapper entityMapper,
+                                      ElasticsearchOperations elasticsearchOperations, ApplicationProperties applicationProperties,
+                                      AnimalImpressionRepository animalImpressionRepository, Clock clock) {
+        this.jestClient = jestClient;
+        this.entityMapper = entityMapper;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.applicationProperties = applicationProperties;
+        this.animalImpressionRepository = animalImpressionRepository;
+        this.clock = clock;
+    }
+
+    @Override
+    public SearchAfterPage<Animal> searchAfter(QueryBuilder query, int size, int trackTotalHits, Float score, Long id,
+                                               boolean backward, String preference) {
+        // A backward search walks the listing in reverse from the sort values, and one more hit is
+        // fetched to know whether the page is the last one in that direction
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(query)
+            .size(size + 1)
+            .sort("_score", backward ? SortOrder.ASC : SortOrder.DESC)
+            .sort("id", backward ? SortOrder.DESC : SortOrder.ASC);
+        if (id != null) {
+            source.searchAfter(new Object[]{score, id});
+        }
+        JsonNode response = search(source, preference);
+
+        List<Animal> animals = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        JsonNode hits = hits(response);
+        for (int i = 0; i < Math.min(hits.size(), size); i++) {
+            JsonNode hit = hits.get(i);
+            animals.add(mapSource(hit));
+            JsonNode sort = hit.get(SORT);
+            scores.add(sort.get(0).floatValue());
+            ids.add(sort.get(1).longValue());
+        }
+        boolean more = hits.size() > size;
+        if (backward) {
+            Collections.reverse(animals);
+            Collections.reverse(scores);
+            Collections.reverse(ids);
+        }
+        // Elasticsearch 5 has no track_total_hits and always counts every hit: the threshold only
+        // bounds the reported total, so that clients do not rely on a count we will stop computing
+        long totalHits = total(response);
+        boolean approximate = totalHits > trackTotalHits;
+        if (animals.isEmpty()) {
+            return new SearchAfterPage<>(animals, approximate ? trackTotalHits : totalHits, approximate, null, null, null, null, false);
+        }
+        int last = animals.size() - 1;
+        return new SearchAfterPage<>(animals, approximate ? trackTotalHits : totalHits, approximate,
+            scores.get(0), ids.get(0), scores.get(last), ids.get(last), more);
+    }
+
+    @Override
+    public SearchPage<Animal> search(QueryBuilder query, Pageable pageable, String preference) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(query)
+            .from((int) pageable.getOffset())
+            .size(pageable.getPageSize());
+        sort(source, pageable);
+        if (preference == null) {
+            budget(source);
+        }
+        JsonNode response = search(source, preference);
+
+        List<Animal> animals = new ArrayList<>();
+        for (JsonNode hit : hits(response)) {
+            animals.add(mapSource(hit));
+        }
+        return page(animals, pageable, response);
+    }
+
+    @Override
+    public SearchIds searchIds(QueryBuilder query, int size, Float score, Long id, String preference) {
+        // The ids are read from the sort values, so the documents are not fetched
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(query)
+            .size(size)
+            .fetchSource(false)
+            .sort("_score", SortOrder.DESC)
+            .sort("id", SortOrder.ASC);
+        if (id != null) {
+            source.searchAfter(new Object[]{score, id});
+        }
+        JsonNode response = search(source, preference);
+
+        JsonNode hits = hits(response);
+        long[] ids = new long[hits.size()];
+        Float lastScore = null;
+        for (int i = 0; i < hits.size(); i++) {
+            JsonNode sort = hits.get(i).get(SORT);
+            ids[i] = sort.get(1).longValue();
+            lastScore = sort.get(0).floatValue();
+        }
+        return new SearchIds(ids, total(response), lastScore, hits.size() < size);
+    }
+
+    @Override
+    public SearchPage<Long> searchIds(QueryBuilder query, Pageable pageable) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(query)
+            .from((int) pageable.getOffset())
+            .size(pageable.getPageSize())
+            .fetchSource(false);
+        sort(source, pageable);
+        budget(source);
+        JsonNode response = search(source, null);
+
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode hit : hits(response)) {
+            ids.add(Long.parseLong(hit.get("_id").asText()));
+        }
+        return page(ids, pageable, response);
+    }
+
+    @Override
+    public Page<Animal> searchShuffled(QueryBuilder query, Pageable pageable, String preference) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(query)
+            .from((int) pageable.getOffset())
+            .size(pageable.getPageSize())
+            .sort(SortBuilders.fieldSort(RANDOM_RANK_FIELD).order(SortOrder.DESC).unmappedType("float").missing("_last"))
+            .sort("id", SortOrder.ASC);
+        JsonNode response = search(source, preference);
+
+        List<Animal> animals = new ArrayList<>();
+        for (JsonNode hit : hits(response)) {
+            animals.add(mapSource(hit));
+        }
+        return new PageImpl<>(animals, pageable, total(response));
+    }
+
+    @Override
+    public String createIndexVersion() {
+        String alias = entity().getIndexName();
+        int version = indexVersions().stream()
+            .mapToInt(index -> Integer.parseInt(index.substring(alias.length() + VERSION_SEPARATOR.length())))
+            .max()
+            .orElse(0) + 1;
+        String indexName = alias + VERSION_SEPARATOR + version;
+
+        JsonObject liveSettings = firstValue(execute(new GetSettings.Builder().addIndex(alias).build()))
+            .getAsJsonObject("settings").getAsJsonObject("index");
+        JsonObject indexSettings = new JsonObject();
+        indexSettings.add("number_of_shards", liveSettings.get("number_of_shards"));
+        indexSettings.addProperty("number_of_replicas", 0);
+        indexSettings.addProperty("refresh_interval", "-1");
+        indexSettings.addProperty("gc_deletes", REINDEX_GC_DELETES);
+        JsonObject settings = new JsonObject();
+        settings.add("index", indexSettings);
+
+        JsonObject body = new JsonObject();
+        body.add("settings", settings);
+        body.add("mappings", firstValue(execute(new GetMapping.Builder().addIndex(alias).build())).get("mappings"));
+        execute(new CreateIndex.Builder(indexName).payload(body.toString()).build());
+        log.debug("Created Elasticsearch index {} for alias {}", indexName, alias);
+        return indexName;
+    }
+
+    @Override
+    public List<Animal> bulkIndex(String indexName, List<Animal> animals) {
+        return bulkIndex(indexName, animals, true);
+    }
+
+    /**
+     * Index the animals in a single bulk request. The documents of a reindex do not replace the ones
+     * written since the index was created, which come from a later read of the database.
+     */
+    private List<Animal> bulkIndex(String indexName, List<Animal> animals, boolean reindex) {
+        if (animals.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Animal> animalsById = new HashMap<>();
+        Map<Long, Long> impressions = impressions(animals);
+        Bulk.Builder bulk = new Bulk.Builder()
+            .defaultIndex(indexName)
+            .defaultType(entity().getIndexType());
+        for (Animal animal : animals) {
+            String id = animal.getId().toString();
+            animalsById.put(id, animal);
+            Index.Builder index = new Index.Builder(mapToSource(animal, impressions.get(animal.getId()))).id(id);
+            if (reindex) {
+                index.setParameter(Parameters.VERSION, REINDEX_VERSION)
+                    .setParameter(Parameters.VERSION_TYPE, "external");
+            }
+            bulk.addAction(index.build());
+        }
+        BulkResult result = send(bulk.build());
+        if (result.getResponseCode() == TOO_MANY_REQUESTS) {
+            return animals;
+        }
+
+        List<Animal> rejected = new ArrayList<>();
+        Map<String, String> failedDocuments = new HashMap<>();
+        for (BulkResult.BulkResultItem item : result.getItems()) {
+            if (item.error == null || reindex && item.status == CONFLICT) {
+                continue;
+            }
+            if (item.status == TOO_MANY_REQUESTS) {
+                rejected.add(animalsById.get(item.id));
+            } else {
+                failedDocuments.put(item.id, item.error);
+            }
+        }
+        if (!failedDocuments.isEmpty()) {
+            throw new ElasticsearchException("Bulk indexing has failures. Use ElasticsearchException.getFailedDocuments() "
+                + "for detailed messages [" + failedDocuments + "]", failedDocuments);
+        }
+        if (!result.isSucceeded() && rejected.isEmpty()) {
+            throw new ElasticsearchException("Failed to execute " + result.getErrorMessage());
+        }
+        return rejected;
+    }
+
+    @Override
+    public void indexAll(List<Animal> animals) {
+        List<String> indexNames = new ArrayList<>(unpublishedIndexVersions());
+        indexNames.add(0, entity().getIndexName());
+        for (String indexName : indexNames) {
+            List<Animal> rejected = bulkIndex(indexName, animals, false);
+            if (!rejected.isEmpty()) {
+                throw new ElasticsearchException(rejected.size() + " Animals rejected by Elasticsearch");
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> indexNames = new ArrayList<>(unpublishedIndexVersions());
+        indexNames.add(0, entity().getIndexName());
+        Bulk.Builder bulk = new Bulk.Builder()
+            .defaultType(entity().getIndexType());
+        for (String indexName : indexNames) {
+            // The animals not yet read by a reindex are deleted too: the delete keeps its version in
+            // the new index, so that the document read before the delete is not indexed afterwards
+            ids.forEach(id -> bulk.addAction(new Delete.Builder(id.toString()).index(indexName).build()));
+        }
+        BulkResult result = send(bulk.build());
+        Map<String, String> failedDocuments = new HashMap<>();
+        for (BulkResult.BulkResultItem item : result.getItems()) {
+            if (item.error != null && item.status != NOT_FOUND) {
+                failedDocuments.put(item.id, item.error);
+            }
+        }
+        if (!failedDocuments.isEmpty() || result.getItems().isEmpty() && !result.isSucceeded()) {
+            throw new ElasticsearchException("Failed to delete the Animals [" + failedDocuments + "]", failedDocuments);
+        }
+    }
+
+    @Override
+    public void updateRandomRanks(List<Long> ids, long generation, Map<Long, Long> impressions) {
+        Map<Long, JsonObject> docs = new HashMap<>();
+        for (Long id : ids) {
+            JsonObject doc = new JsonObject();
+            doc.addProperty(RANDOM_RANK_FIELD, RandomUtil.randomRank(id, generation));
+            if (impressions.containsKey(id)) {
+                doc.addProperty(IMPRESSIONS_FIELD, impressions.get(id));
+            }
+            docs.put(id, doc);
+        }
+        updateDocuments(docs, "random ranks");
+    }
+
+    /**
+     * Update some fields of the documents, in a single bulk request.
+     */
+    private void updateDocuments(Map<Long, JsonObject> docs, String fields) {
+        if (docs.isEmpty()) {
+            return;
+        }
+        Bulk.Builder bulk = new Bulk.Builder()
+            .defaultIndex(entity().getIndexName())
+            .defaultType(entity().getIndexType());
+        docs.forEach((id, doc) -> {
+            JsonObject update = new JsonObject();
+            update.add("doc", doc);
+            bulk.addAction(new Update.Builder(update.toString()).id(id.toString()).build());
+        });
+        BulkResult result = send(bulk.build());
+        Map<String, String> failedDocuments = new HashMap<>();
+        for (BulkResult.BulkResultItem item : result.getItems()) {
+            // The animals deleted since the ids were read are not in the index anymore
+            if (item.error != null && item.status != NOT_FOUND) {
+                failedDocuments.put(item.id, item.error);
+            }
+        }
+        if (!failedDocuments.isEmpty() || result.getItems().isEmpty() && !result.isSucceeded()) {
+            throw new ElasticsearchException("Failed to update the " + fields + " [" + failedDocuments + "]", failedDocuments);
+        }
+    }
+
+    @Override
+    public void publishIndexVersion(String indexName) {
+        String alias = entity().getIndexName();
+        JsonObject aliases = execute(new GetAliases.Builder().addIndex(alias).build()).getJsonObject();
+        Set<String> previousIndices = aliases.keySet();
+
+        // Restore the settings of the live index, which were relaxed for the bulk indexing
+        JsonObject liveSettings = firstValue(execute(new GetSettings.Builder().addIndex(alias).build()))
+            .getAsJsonObject("settings").getAsJsonObject("index");
+        JsonObject indexSettings = new JsonObject();
+        indexSettings.add("number_of_replicas", liveSettings.get("number_of_replicas"));
+        indexSettings.add("refresh_interval", liveSettings.has("refresh_interval") ? liveSettings.get("refresh_interval") : JsonNull.INSTANCE);
+        indexSettings.add("gc_deletes", liveSettings.has("gc_deletes") ? liveSettings.get("gc_deletes") : JsonNull.INSTANCE);
+        JsonObject settings = new JsonObject();
+        settings.add("index", indexSettings);
+        execute(new UpdateSettings.Builder(settings.toString()).addIndex(indexName).build());
+        execute(new Refresh.Builder().addIndex(indexName).build());
+
+        ModifyAliases.Builder modifyAliases = new ModifyAliases.Builder(new AddAliasMapping.Builder(indexName, alias).build());
+        if (previousIndices.contains(alias)) {
+            // The alias name is still used by the index created by Spring Data, which is deleted
+            // in the same request that adds the alias, so that searches always find one of them
+            log.warn("Replacing the Elasticsearch index {} by an alias", alias);
+            modifyAliases.addAlias(new RemoveIndexMapping(alias));
+        } else if (!previousIndices.isEmpty()) {
+            modifyAliases.addAlias(new RemoveAliasMapping.Builder(new ArrayList<>(previousIndices), alias).build());
+        }
+        execute(modifyAliases.build());
+        log.debug("Elasticsearch alias {} switched to index {}", alias, indexName);
+
+        for (String index : indexVersions()) {
+            if (!index.equals(indexName)) {
+                execute(new DeleteIndex.Builder(index).build());
+                log.debug("Deleted Elasticsearch index {}", index);
+            }
+        }
+    }
+
+    @Override
+    public void deleteIndexVersion(String indexName) {
+        execute(new DeleteIndex.Builder(indexName).build());
+        log.debug("Deleted Elasticsearch index {}", indexName);
+    }
+
+    /**
+     * @return the names of all the versions of the index, including the ones not used by the alias
+     */
+    private Set<String> indexVersions() {
+        String alias = entity().getIndexName();
+        return execute(new GetAliases.Builder().addIndex(alias + VERSION_SEPARATOR + "*").build())
+            .getJsonObject().keySet().stream()
+            .filter(index -> isIndexVersion(index, alias))
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * @return the names of the versions of the index being built by a reindex, which the alias does not use yet
+     */
+    private Set<String> unpublishedIndexVersions() {
+        String alias = entity().getIndexName();
+        return execute(new GetAliases.Builder().addIndex(alias + VERSION_SEPARATOR + "*").build())
+            .getJsonObject().entrySet().stream()
+            .filter(index -> isIndexVersion(index.getKey(), alias))
+            .filter(index -> !index.getValue().getAsJsonObject().getAsJsonObject("aliases").has(alias))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+    }
+
+    private static boolean isIndexVersion(String index, String alias) {
+        return index.substring(alias.length() + VERSION_SEPARATOR.length()).matches("\\d+");
+    }
+
+    private ElasticsearchPersistentEntity<?> entity() {
+        return elasticsearchOperations.getPersistentEntityFor(Animal.class);
+    }
+
+    private JsonNode search(SearchSourceBuilder source, String preference) {
+        Search.Builder search = new Search.Builder(source.toString())
+            .addIndex(entity().getIndexName())
+            .addType(entity().getIndexType());
+        if (preference != null) {
+            // The requests of a preference are answered by the same shard copies, whose request cache
+            // then holds their hits and totals: Elasticsearch only caches the hits when asked explicitly
+            search.setParameter(PREFERENCE, preference)
+                .setParameter(REQUEST_CACHE, true);
+        }
+        JsonNode response = read(search.build());
+        if (response.path(TIMED_OUT).asBoolean()) {
+            // The hits collected before the timeout are only part of the results, they must not be served as a page
+            throw new SearchTimeoutException("Search timed out after "
+                + applicationProperties.getSearch().getSearchTimeout() + " ms");
+        }
+        return response;
+    }
+
+    /**
+     * Execute a search and read its response with Jackson. The REST client transport gives the stream of the response,
+     * the Jest HTTP client only gives it parsed with Gson, and its JSON string is read again.
+     */
+    private JsonNode read(Search search) {
+        try {
+            if (jestClient instanceof RestClientJestClient) {
+                return ((RestClientJestClient) jestClient).execute(search, entityMapper::readTree);
+            }
+            return entityMapper.readTree(execute(search).getJsonString());
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to execute " + search.getRestMethodName() + " " + search.getURI(), e);
+        }
+    }
+
+    private static JsonNode hits(JsonNode response) {
+        return response.path("hits").path("hits");
+    }
+
+    private static long total(JsonNode response) {
+        return response.path("hits").path("total").asLong();
+    }
+
+    /**
+     * Stop each shard after the configured number of hits, and fail the search after the configured timeout.
+     * Only the relevance query_string searches without a preference are cut short: the searches with a preference
+     * (seeded or shuffled) are kept in the request cache, and they and the search_after listings must see every hit
+     * to keep the same order on every page.
+     */
+    private void budget(SearchSourceBuilder source) {
+        ApplicationProperties.Search search = applicationProperties.getSearch();
+        if (search.getTerminateAfter() > 0) {
+            source.terminateAfter(search.getTerminateAfter());
+        }
+        if (search.getSearchTimeout() > 0) {
+            source.timeout(TimeValue.timeValueMillis(search.getSearchTimeout()));
+        }
+    }
+
+    /**
+     * The page of a search, whose total only counts the hits collected when a shard terminated early.
+     */
+    private static <T> SearchPage<T> page(List<T> content, Pageable pageable, JsonNode response) {
+        return new SearchPage<>(content, pageable, total(response), response.path(TERMINATED_EARLY).asBoolean());
+    }
+
+    private void sort(SearchSourceBuilder source, Pageable pageable) {
+        pageable.getSort().forEach(order ->
+            source.sort(order.getProperty(), order.isAscending() ? SortOrder.ASC : SortOrder.DESC));
+    }
+
+    private <T extends JestResult> T execute(Action<T> action) {
+        T result = send(action);
+        if (!result.isSucceeded()) {
+            throw new ElasticsearchException("Failed to execute " + action.getRestMethodName() + " " + action.getURI()
+                + ": " + result.getErrorMessage());
+        }
+        return result;
+    }
+
+    private <T extends JestResult> T send(Action<T> action) {
+        try {
+            return jestClient.execute(action);
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to execute " + action.getRestMethodName() + " " + action.getURI(), e);
+        }
+    }
+
+    /**
+     * Responses of the index APIs are keyed by index name, which is unknown when the alias is used.
+     */
+    private JsonObject firstValue(JestResult result) {
+        return result.getJsonObject().entrySet().stream()
+            .map(Map.Entry::getValue)
+            .map(JsonElement::getAsJsonObject)
+            .findFirst()
+            .orElseThrow(() -> new ElasticsearchException("Empty response from Elasticsearch"));
+    }
+
+    /**
+     * The impressions counted at the last shuffle, which are not part of the animals.
+     */
+    private Map<Long, Long> impressions(List<Animal> animals) {
+        List<Long> ids = animals.stream().map(Animal::getId).collect(Collectors.toList());
+        return animalImpressionRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(AnimalImpression::getAnimalId, AnimalImpression::getShuffledImpressions));
+    }
+
+    /**
+     * Map the animal to its document, with the random rank of the current shuffle and its impressions at that shuffle.
+     */
+    private String mapToSource(Animal animal, Long impressions) {
+        ObjectNode source = entityMapper.mapToTree(animal);
+        long generation = RandomUtil.shuffleGeneration(clock.instant(), applicationProperties.getSearch().getShuffleInSeconds());
+        source.put(RANDOM_RANK_FIELD, RandomUtil.randomRank(animal.getId(), generation));
+        if (impressions != null) {
+            source.put(IMPRESSIONS_FIELD, impressions);
+        }
+        try {
+            return entityMapper.mapToString(source);
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to map the Animal " + animal.getId(), e);
+        }
+    }
+
+    /**
+     * Map the source of a hit from the tree of the response, without writing it back to JSON.
+     */
+    private Animal mapSource(JsonNode hit) {
+        try {
+            return entityMapper.treeToValue(hit.get("_source"), Animal.class);
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to map the Animal " + hit.path("_id").asText(), e);
+        }
+    }
+
+    /**
+     * The remove_index action of the aliases API, which Jest does not provide.
+     */
+    private static class RemoveIndexMapping extends AliasMapping {
+
+        RemoveIndexMapping(String index) {
+            this.indices.add(index);
+        }
+
+        @Override
+        public String getType() {
+            return "remove_index";
+        }
+
+        @Override
+        public List<Map<String, Object>> getData() {
+            return Collections.singletonList(Collections.singletonMap(getType(), Collections.singletonMap("index", indices.get(0))));
+        }
+    }
+}
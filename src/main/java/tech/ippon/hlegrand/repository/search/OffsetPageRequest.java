@@ -0,0 +1,103 @@
+package tech.ippon.hlegrand.repository.search;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Pagination information for a range of hits which does not start on a page boundary.
+ * <p>
+ * The size can be 0, to only get the total number of hits.
+ */
+public class OffsetPageRequest implements Pageable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+
+    private final int size;
+
+    private final Sort sort;
+
+    public OffsetPageRequest(long offset, int size, Sort sort) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("The offset must not be negative: " + offset);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("The size must not be negative: " + size);
+        }
+        this.offset = offset;
+        this.size = size;
+        this.sort = Objects.requireNonNull(sort);
+    }
+
+    @Override
+    public int getPageNumber() {
+        return size == 0 ? 0 : (int) (offset / size);
+    }
+
+    @Override
+    public int getPageSize() {
+        return size;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    @Override
+    public Pageable next() {
+        return new OffsetPageRequest(offset + size, size, sort);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new OffsetPageRequest(Math.max(offset - size, 0), size, sort) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new OffsetPageRequest(0, size, sort);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        OffsetPageRequest that = (OffsetPageRequest) o;
+        return offset == that.offset &&
+            size == that.size &&
+            Objects.equals(sort, that.sort);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(offset, size, sort);
+    }
+
+    @Override
+    public String toString() {
+        return "OffsetPageRequest{" +
+            "offset=" + offset +
+            ", size=" + size +
+            ", sort=" + sort +
+            "}";
+    }
+}
@@ -0,0 +1,90 @@
+package tech.ippon.hlegrand.repository.search;
+
+import java.util.List;
+
+/**
+ * The hits of an Elasticsearch search_after request, sorted by score then id.
+ *
+ * @param <T> the type of the documents
+ */
+public class SearchAfterPage<T> {
+
+    private final List<T> content;
+
+    private final long totalHits;
+
+    private final boolean totalHitsApproximate;
+
+    private final Float firstScore;
+
+    private final Long firstId;
+
+    private final Float lastScore;
+
+    private final Long lastId;
+
+    private final boolean more;
+
+    public SearchAfterPage(List<T> content, long totalHits, boolean totalHitsApproximate, Float firstScore, Long firstId,
+                           Float lastScore, Long lastId, boolean more) {
+        this.content = content;
+        this.totalHits = totalHits;
+        this.totalHitsApproximate = totalHitsApproximate;
+        this.firstScore = firstScore;
+        this.firstId = firstId;
+        this.lastScore = lastScore;
+        this.lastId = lastId;
+        this.more = more;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return true if the total is only a lower bound
+     */
+    public boolean isTotalHitsApproximate() {
+        return totalHitsApproximate;
+    }
+
+    /**
+     * @return the score of the first hit, or null if there is no hit
+     */
+    public Float getFirstScore() {
+        return firstScore;
+    }
+
+    /**
+     * @return the id of the first hit, or null if there is no hit
+     */
+    public Long getFirstId() {
+        return firstId;
+    }
+
+    /**
+     * @return the score of the last hit, or null if there is no hit
+     */
+    public Float getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * @return the id of the last hit, or null if there is no hit
+     */
+    public Long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return true if there are more hits in the direction of the search: after the last hit of a forward search,
+     * before the first hit of a backward one
+     */
+    public boolean hasMore() {
+        return more;
+    }
+}
@@ -0,0 +1,96 @@
+package tech.ippon.hlegrand.repository.search;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The ids of the hits of an Elasticsearch search, sorted by score then id.
+ * <p>
+ * The ids are kept in a primitive array, so that a long listing can be stored off-heap. They may only be
+ * the first hits of the listing: the score of the last one is kept to search the next hits after it.
+ */
+public class SearchIds implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] ids;
+
+    private final long totalHits;
+
+    private final Float lastScore;
+
+    private final boolean complete;
+
+    /**
+     * Create the ids of all the hits of a search.
+     *
+     * @param ids       the ids of the hits
+     * @param totalHits the total number of hits
+     */
+    public SearchIds(long[] ids, long totalHits) {
+        this(ids, totalHits, null, true);
+    }
+
+    /**
+     * @param ids       the ids of the hits
+     * @param totalHits the total number of hits
+     * @param lastScore the score of the last hit, or null if there is no hit
+     * @param complete  true if there is no hit after the last one
+     */
+    public SearchIds(long[] ids, long totalHits, Float lastScore, boolean complete) {
+        this.ids = ids;
+        this.totalHits = totalHits;
+        this.lastScore = lastScore;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the ids, which are only the first ones when the listing is not complete
+     */
+    public long[] getIds() {
+        return ids;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return the score of the last hit, or null if there is no hit
+     */
+    public Float getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * @return the id of the last hit, or null if there is no hit
+     */
+    public Long getLastId() {
+        return ids.length > 0 ? ids[ids.length - 1] : null;
+    }
+
+    /**
+     * @return true if there is no hit after the last one
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param count the number of ids
+     * @return true if the ids hold the first count hits of the listing, or all of them when there are fewer
+     */
+    public boolean covers(long count) {
+        return complete || ids.length >= count;
+    }
+
+    /**
+     * @param next the hits following the last one of these ids
+     * @return the ids of these hits followed by the next ones
+     */
+    public SearchIds append(SearchIds next) {
+        long[] appended = Arrays.copyOf(ids, ids.length + next.ids.length);
+        System.arraycopy(next.ids, 0, appended, ids.length, next.ids.length);
+        return new SearchIds(appended, next.totalHits, next.ids.length > 0 ? next.lastScore : lastScore, next.complete);
+    }
+}
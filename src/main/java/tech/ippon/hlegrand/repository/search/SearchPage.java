@@ -0,0 +1,56 @@
+package tech.ippon.hlegrand.repository.search;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of the hits of an Elasticsearch search, whose total is only a lower bound when the shards
+ * stopped collecting after the terminate-after property hits.
+ *
+ * @param <T> the type of the content
+ */
+public class SearchPage<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean totalHitsApproximate;
+
+    /**
+     * Create a page with an exact total.
+     *
+     * @param content   the content of the page
+     * @param pageable  the pagination information
+     * @param totalHits the total number of hits
+     */
+    public SearchPage(List<T> content, Pageable pageable, long totalHits) {
+        this(content, pageable, totalHits, false);
+    }
+
+    /**
+     * Create a page.
+     *
+     * @param content              the content of the page
+     * @param pageable             the pagination information
+     * @param totalHits            the total number of hits
+     * @param totalHitsApproximate true if the total is only a lower bound
+     */
+    public SearchPage(List<T> content, Pageable pageable, long totalHits, boolean totalHitsApproximate) {
+        super(content, pageable, totalHits);
+        this.totalHitsApproximate = totalHitsApproximate;
+    }
+
+    /**
+     * @return true if the total is only a lower bound
+     */
+    public boolean isTotalHitsApproximate() {
+        return totalHitsApproximate;
+    }
+
+    @Override
+    public <U> SearchPage<U> map(Function<? super T, ? extends U> converter) {
+        return new SearchPage<>(getConvertedContent(converter), getPageable(), getTotalElements(), totalHitsApproximate);
+    }
+}
@@ -0,0 +1,16 @@
+package tech.ippon.hlegrand.repository.search;
+
+import org.springframework.data.elasticsearch.ElasticsearchException;
+
+/**
+ * Thrown when the shards of a search time out: the hits they collected are only part of the results,
+ * so they are neither served nor cached.
+ */
+public class SearchTimeoutException extends ElasticsearchException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SearchTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -3,6 +3,7 @@ package tech.ippon.hlegrand.security;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import tech.ippon.hlegrand.security.jwt.JWTAuthenticationDetails;
 
 import java.util.Optional;
 
@@ -45,6 +46,18 @@ public final class SecurityUtils {
             .map(authentication -> (String) authentication.getCredentials());
     }
 
+    /**
+     * Get the shuffle seed of the current user, carried by the JWT.
+     *
+     * @return the shuffle seed of the current user
+     */
+    public static Optional<Integer> getCurrentUserShuffleSeed() {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        return Optional.ofNullable(securityContext.getAuthentication())
+            .filter(authentication -> authentication.getDetails() instanceof JWTAuthenticationDetails)
+            .map(authentication -> ((JWTAuthenticationDetails) authentication.getDetails()).getShuffleSeed());
+    }
+
     /**
      * Check if a user is authenticated.
      *
@@ -0,0 +1,48 @@
+package tech.ippon.hlegrand.security.jwt;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The details of an authentication read from a JWT, besides the user and its authorities.
+ */
+public class JWTAuthenticationDetails implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Integer shuffleSeed;
+
+    public JWTAuthenticationDetails(Integer shuffleSeed) {
+        this.shuffleSeed = shuffleSeed;
+    }
+
+    /**
+     * @return the shuffle seed of the user, or null for the tokens created before it was added
+     */
+    public Integer getShuffleSeed() {
+        return shuffleSeed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Objects.equals(shuffleSeed, ((JWTAuthenticationDetails) o).shuffleSeed);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(shuffleSeed);
+    }
+
+    @Override
+    public String toString() {
+        return "JWTAuthenticationDetails{" +
+            "shuffleSeed=" + shuffleSeed +
+            "}";
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import io.github.jhipster.config.JHipsterProperties;
+import tech.ippon.hlegrand.service.util.RandomUtil;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -28,6 +29,8 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String SHUFFLE_SEED_KEY = "seed";
+
     private Key key;
 
     private long tokenValidityInMilliseconds;
@@ -76,6 +79,7 @@ public class TokenProvider {
         return Jwts.builder()
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
+            .claim(SHUFFLE_SEED_KEY, RandomUtil.generateSeed())
             .signWith(key, SignatureAlgorithm.HS512)
             .setExpiration(validity)
             .compact();
@@ -94,7 +98,9 @@ public class TokenProvider {
 
         User principal = new User(claims.getSubject(), "", authorities);
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        authentication.setDetails(new JWTAuthenticationDetails(claims.get(SHUFFLE_SEED_KEY, Integer.class)));
+        return authentication;
     }
 
     public boolean validateToken(String authToken) {
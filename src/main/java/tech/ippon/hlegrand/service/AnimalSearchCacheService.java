@@ -0,0 +1,246 @@
+package tech.ippon.hlegrand.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import tech.ippon.hlegrand.repository.search.SearchIds;
+import tech.ippon.hlegrand.service.dto.AnimalDTO;
+import tech.ippon.hlegrand.service.dto.AnimalSearchFilter;
+import tech.ippon.hlegrand.service.dto.SearchOrder;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Service caching the pages of animal search results, and the ids of the random searches.
+ * <p>
+ * The entries are not evicted when the animals change: the key holds a generation which is incremented
+ * instead, so that the entries of the previous generations are no longer read and expire with the cache TTL.
+ * The generation is local to this node, the other nodes serve their cached pages until they expire.
+ * <p>
+ * The identical searches missing the cache at the same time are coalesced: only the first one is sent
+ * to Elasticsearch, the others wait for its result.
+ */
+@Service
+public class AnimalSearchCacheService {
+
+    public static final String SEARCH_RESULTS_CACHE = "animalSearchResults";
+
+    public static final String SEARCH_IDS_CACHE = "animalSearchIds";
+
+    private final Logger log = LoggerFactory.getLogger(AnimalSearchCacheService.class);
+
+    private final Cache cache;
+
+    private final Cache idsCache;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ConcurrentMap<SearchKey, CompletableFuture<Object>> pagesInFlight = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<SearchKey, CompletableFuture<Object>> idsInFlight = new ConcurrentHashMap<>();
+
+    public AnimalSearchCacheService(CacheManager cacheManager) {
+        this.cache = cacheManager.getCache(SEARCH_RESULTS_CACHE);
+        this.idsCache = cacheManager.getCache(SEARCH_IDS_CACHE);
+    }
+
+    /**
+     * Get a page of search results from the cache, or search it and cache it.
+     *
+     * @param order    the order of the search
+     * @param query    the query of the search, or null
+     * @param filter   the filters of the search
+     * @param seed     the seed of the random order, the shuffle generation of the shuffled order, or null for the relevance order
+     * @param pageable the pagination information
+     * @param search   the search to run when the page is not in the cache
+     * @param <P>      the type of the page, the same for all the searches of an order
+     * @return the page of search results
+     */
+    public <P extends Page<AnimalDTO>> P get(SearchOrder order, String query, AnimalSearchFilter filter, Long seed,
+                                             Pageable pageable, Supplier<P> search) {
+        SearchKey key = new SearchKey(generation.get(), order, normalize(query), filter, seed,
+            pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
+        return get(cache, pagesInFlight, key, page -> true, cached -> search.get());
+    }
+
+    /**
+     * Get the first ordered ids of a random search from the cache, or search them and cache them.
+     * <p>
+     * The ids are stored off-heap, so that every page of the listing is served from the same ids
+     * instead of running the scored query again. The cached ids are extended when they do not cover the count.
+     *
+     * @param order  the order of the search
+     * @param query  the query of the search, or null
+     * @param filter the filters of the search
+     * @param seed   the seed of the random order
+     * @param count  the number of ids needed
+     * @param search the search extending the cached ids, or searching the first ones when given null
+     * @return the ids of the search results, covering the count
+     */
+    public SearchIds getIds(SearchOrder order, String query, AnimalSearchFilter filter, int seed, long count,
+                            UnaryOperator<SearchIds> search) {
+        SearchKey key = new SearchKey(generation.get(), order, normalize(query), filter, (long) seed, 0, 0, Sort.unsorted());
+        return get(idsCache, idsInFlight, key, ids -> ids.covers(count), search);
+    }
+
+    /**
+     * Stop serving the cached pages, because an animal was created, updated or deleted.
+     */
+    public void invalidate() {
+        log.debug("Invalidating the cached search results of generation {}", generation.getAndIncrement());
+    }
+
+    /**
+     * Get a value from the cache when it is usable, or search it from the cached value, null when missing.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T get(Cache region, ConcurrentMap<SearchKey, CompletableFuture<Object>> inFlight, SearchKey key,
+                      Predicate<T> usable, UnaryOperator<T> search) {
+        while (true) {
+            T cached = cached(region, key);
+            if (cached != null && usable.test(cached)) {
+                log.debug("Search results found in the {} cache for {}", region.getName(), key);
+                return cached;
+            }
+            CompletableFuture<Object> call = new CompletableFuture<>();
+            CompletableFuture<Object> runningCall = inFlight.putIfAbsent(key, call);
+            if (runningCall != null) {
+                log.debug("Waiting for the same search in flight for {}", key);
+                T value = (T) await(runningCall);
+                if (usable.test(value)) {
+                    return value;
+                }
+                // The search in flight did not go far enough for this one, which extends its result
+                continue;
+            }
+            try {
+                // The same search may have completed between the cache miss and the registration of this one
+                cached = cached(region, key);
+                T value = cached != null && usable.test(cached) ? cached : search.apply(cached);
+                region.put(key, value);
+                call.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cached(Cache region, SearchKey key) {
+        Cache.ValueWrapper cached = region.get(key);
+        return cached != null ? (T) cached.get() : null;
+    }
+
+    /**
+     * Wait for the result of a search in flight, the waiting threads get the same exception when it fails.
+     */
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queries differing only by their spacing are the same search.
+     */
+    private static String normalize(String query) {
+        return query != null ? query.trim().replaceAll("\\s+", " ") : null;
+    }
+
+    private static final class SearchKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long generation;
+
+        private final SearchOrder order;
+
+        private final String query;
+
+        private final AnimalSearchFilter filter;
+
+        private final Long seed;
+
+        private final int page;
+
+        private final int size;
+
+        private final Sort sort;
+
+        private SearchKey(long generation, SearchOrder order, String query, AnimalSearchFilter filter, Long seed,
+                          int page, int size, Sort sort) {
+            this.generation = generation;
+            this.order = order;
+            this.query = query;
+            this.filter = filter;
+            this.seed = seed;
+            this.page = page;
+            this.size = size;
+            this.sort = sort;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SearchKey searchKey = (SearchKey) o;
+            return generation == searchKey.generation &&
+                page == searchKey.page &&
+                size == searchKey.size &&
+                order == searchKey.order &&
+                Objects.equals(query, searchKey.query) &&
+                Objects.equals(filter, searchKey.filter) &&
+                Objects.equals(seed, searchKey.seed) &&
+                Objects.equals(sort, searchKey.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(generation, order, query, filter, seed, page, size, sort);
+        }
+
+        @Override
+        public String toString() {
+            return "SearchKey{" +
+                "generation=" + generation +
+                ", order=" + order +
+                ", query='" + query + "'" +
+                ", filter=" + filter +
+                ", seed=" + seed +
+                ", page=" + page +
+                ", size=" + size +
+                ", sort=" + sort +
+                "}";
+        }
+    }
+}
@@ -2,20 +2,81 @@ package tech.ippon.hlegrand.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.elasticsearch.common.lucene.search.function.CombineFunction;
+import org.elasticsearch.common.lucene.search.function.FiltersFunctionScoreQuery;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.ElasticsearchException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.ippon.hlegrand.config.ApplicationProperties;
 import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent.EntityType;
 import tech.ippon.hlegrand.repository.AnimalRepository;
 import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+import tech.ippon.hlegrand.repository.search.OffsetPageRequest;
+import tech.ippon.hlegrand.repository.search.SearchAfterPage;
+import tech.ippon.hlegrand.repository.search.SearchIds;
+import tech.ippon.hlegrand.repository.search.SearchPage;
+import tech.ippon.hlegrand.security.SecurityUtils;
 import tech.ippon.hlegrand.service.dto.AnimalDTO;
+import tech.ippon.hlegrand.service.dto.AnimalSearchFilter;
+import tech.ippon.hlegrand.service.dto.CursorPage;
+import tech.ippon.hlegrand.service.dto.KeysetCursor;
+import tech.ippon.hlegrand.service.dto.SearchCursor;
+import tech.ippon.hlegrand.service.dto.SearchOrder;
 import tech.ippon.hlegrand.service.mapper.AnimalMapper;
+import tech.ippon.hlegrand.service.util.FeistelPermutation;
+import tech.ippon.hlegrand.service.util.QueryStringGuard;
+import tech.ippon.hlegrand.service.util.RandomUtil;
+import tech.ippon.hlegrand.service.util.SlotInterleaving;
 
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.constantScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.functionScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.prefixQuery;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.fieldValueFactorFunction;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.randomFunction;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.scriptFunction;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.weightFactorFunction;
 
 /**
  * Service Implementation for managing Animal.
@@ -24,6 +85,19 @@ import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 @Transactional
 public class AnimalService {
 
+    /**
+     * Random scores are between 0 and 1, so this weight puts every promoted animal above the others.
+     */
+    private static final float PROMOTED_WEIGHT = 2f;
+
+    /**
+     * The ids of a random search are read in multiples of this number, as the pages need them.
+     */
+    private static final int IDS_CHUNK_SIZE = 1000;
+
+    private static final String IMPRESSION_BALANCE_SCRIPT = "doc.containsKey('impressions') && doc['impressions'].size() > 0"
+        + " ? params.scale / (params.scale + doc['impressions'].value) : 1";
+
     private final Logger log = LoggerFactory.getLogger(AnimalService.class);
 
     private final AnimalRepository animalRepository;
@@ -32,10 +106,44 @@ public class AnimalService {
 
     private final AnimalSearchRepository animalSearchRepository;
 
-    public AnimalService(AnimalRepository animalRepository, AnimalMapper animalMapper, AnimalSearchRepository animalSearchRepository) {
+    private final ApplicationProperties applicationProperties;
+
+    private final EntityManager entityManager;
+
+    private final SearchOutboxService searchOutboxService;
+
+    private final AnimalSearchCacheService animalSearchCacheService;
+
+    private final ImpressionService impressionService;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final QueryStringGuard queryStringGuard;
+
+    private final Clock clock;
+
+    private final AsyncTaskExecutor reindexExecutor;
+
+    public AnimalService(AnimalRepository animalRepository, AnimalMapper animalMapper, AnimalSearchRepository animalSearchRepository,
+                         ApplicationProperties applicationProperties, EntityManager entityManager,
+                         SearchOutboxService searchOutboxService, AnimalSearchCacheService animalSearchCacheService,
+                         ImpressionService impressionService, PlatformTransactionManager transactionManager, Clock clock,
+                         @Qualifier("reindexExecutor") AsyncTaskExecutor reindexExecutor) {
         this.animalRepository = animalRepository;
         this.animalMapper = animalMapper;
         this.animalSearchRepository = animalSearchRepository;
+        this.applicationProperties = applicationProperties;
+        this.entityManager = entityManager;
+        this.searchOutboxService = searchOutboxService;
+        this.animalSearchCacheService = animalSearchCacheService;
+        this.impressionService = impressionService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.clock = clock;
+        this.reindexExecutor = reindexExecutor;
+        ApplicationProperties.Search search = applicationProperties.getSearch();
+        this.queryStringGuard = new QueryStringGuard(search.getMaxQueryLength(), search.getMaxQueryClauses(),
+            search.getMaxRegexpLength(), search.getMaxFuzzyTerms());
     }
 
     /**
@@ -49,14 +157,199 @@ public class AnimalService {
         Animal animal = animalMapper.toEntity(animalDTO);
         animal = animalRepository.save(animal);
         AnimalDTO result = animalMapper.toDto(animal);
-        animalSearchRepository.save(animal);
+        searchOutboxService.recordChange(EntityType.ANIMAL, animal.getId());
+        animalSearchCacheService.invalidate();
         return result;
     }
 
-    public void reindexAll() {
+    /**
+     * Reindex all the animals in Elasticsearch.
+     * <p>
+     * The id range is split in as many partitions as there are workers, indexed concurrently. The animals of
+     * a partition are read in chunks sorted by id, each chunk is sent in a bulk request and then detached
+     * from the persistence context, so that the memory used does not depend on the size of the table.
+     * The animals are indexed in a new version of the index, which replaces the live one once complete:
+     * searches keep using the previous version meanwhile. The changes sent by the outbox during the reindex
+     * are written to both versions, and are not overwritten by the chunks read before them. When the reindex
+     * fails, the new version is deleted and the live one is left as is.
+     *
+     * @param job the job to report the progress to
+     * @return the number of animals indexed
+     */
+    @Transactional(readOnly = true)
+    public long reindexAll(ReindexJob job) {
         log.debug("Request to reindex all Animals in Elasticsearch");
-        List<Animal> animals = animalRepository.findAll();
-        animalSearchRepository.saveAll(animals);
+        job.setTotalDocuments(animalRepository.count());
+        String indexName = animalSearchRepository.createIndexVersion();
+        long count;
+        try {
+            count = reindexPartitions(job, indexName);
+            animalSearchRepository.publishIndexVersion(indexName);
+        } catch (RuntimeException e) {
+            deleteIndexVersion(indexName, e);
+            throw e;
+        }
+        animalSearchCacheService.invalidate();
+        log.debug("Reindexed {} Animals in Elasticsearch index {}", count, indexName);
+        return count;
+    }
+
+    private long reindexPartitions(ReindexJob job, String indexName) {
+        Long minId = animalRepository.findMinId();
+        if (minId == null) {
+            return 0;
+        }
+        ApplicationProperties.Reindex reindex = applicationProperties.getReindex();
+        Semaphore bulkPermits = new Semaphore(reindex.getBulkConcurrency());
+        List<Supplier<Long>> partitions = new ArrayList<>();
+        long maxId = animalRepository.findMaxId();
+        long partitionSize = (maxId - minId) / Math.max(reindex.getWorkers(), 1) + 1;
+        for (long from = minId; from <= maxId; from += partitionSize) {
+            long to = Math.min(from + partitionSize - 1, maxId);
+            long partitionMinId = from;
+            partitions.add(() -> reindexPartition(job, indexName, partitionMinId, to, bulkPermits));
+        }
+        return runPartitions(partitions);
+    }
+
+    /**
+     * Delete the version of the index of a failed reindex: it is not replicated nor refreshed,
+     * and the outbox would keep writing the changes to it.
+     */
+    private void deleteIndexVersion(String indexName, RuntimeException failure) {
+        try {
+            animalSearchRepository.deleteIndexVersion(indexName);
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete the Elasticsearch index {} of a failed reindex", indexName, e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Run the partitions in the current thread when there is only one, so that it uses the current transaction,
+     * or in a pool of workers, each partition in its own transaction.
+     */
+    private long runPartitions(List<Supplier<Long>> partitions) {
+        if (partitions.size() == 1) {
+            return readOnlyTransaction.execute(status -> partitions.get(0).get());
+        }
+        List<Future<Long>> results = new ArrayList<>();
+        try {
+            for (Supplier<Long> partition : partitions) {
+                results.add(reindexExecutor.submit(() -> readOnlyTransaction.execute(status -> partition.get())));
+            }
+            long count = 0;
+            for (Future<Long> result : results) {
+                count += result.get();
+            }
+            return count;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reindex interrupted", e);
+        } finally {
+            // The other partitions stop when one fails
+            results.forEach(result -> result.cancel(true));
+        }
+    }
+
+    private long reindexPartition(ReindexJob job, String indexName, long minId, long maxId, Semaphore bulkPermits) {
+        log.debug("Reindexing Animals from id {} to {}", minId, maxId);
+        Pageable chunk = PageRequest.of(0, applicationProperties.getReindex().getChunkSize(), Sort.by(Sort.Direction.ASC, "id"));
+        Slice<Animal> animals = animalRepository.findAllByIdBetween(minId, maxId, chunk);
+        long count = indexChunk(job, indexName, animals.getContent(), bulkPermits);
+        while (animals.hasNext()) {
+            Long lastId = animals.getContent().get(animals.getNumberOfElements() - 1).getId();
+            animals = animalRepository.findAllByIdBetween(lastId + 1, maxId, chunk);
+            count += indexChunk(job, indexName, animals.getContent(), bulkPermits);
+        }
+        return count;
+    }
+
+    /**
+     * Send a chunk in a bulk request, sending again the animals rejected by Elasticsearch after an exponential
+     * backoff: the worker stops reading from the database meanwhile, to let Elasticsearch catch up.
+     */
+    private int indexChunk(ReindexJob job, String indexName, List<Animal> animals, Semaphore bulkPermits) {
+        job.documentsRead(animals.size());
+        ApplicationProperties.Reindex reindex = applicationProperties.getReindex();
+        List<Animal> pending = animals;
+        for (int retry = 0; !pending.isEmpty(); retry++) {
+            if (retry > 0) {
+                if (retry > reindex.getMaxRetries()) {
+                    job.documentsFailed(pending.size());
+                    throw new ElasticsearchException(pending.size() + " Animals still rejected by Elasticsearch after "
+                        + reindex.getMaxRetries() + " retries");
+                }
+                long backoff = reindex.getRetryBackoff() << (retry - 1);
+                log.warn("{} Animals rejected by Elasticsearch, retrying in {} ms", pending.size(), backoff);
+                sleep(backoff);
+            }
+            pending = bulkIndex(job, indexName, pending, bulkPermits);
+        }
+        job.documentsIndexed(animals.size());
+        entityManager.clear();
+        return animals.size();
+    }
+
+    private List<Animal> bulkIndex(ReindexJob job, String indexName, List<Animal> animals, Semaphore bulkPermits) {
+        try {
+            bulkPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reindex interrupted", e);
+        }
+        try {
+            return animalSearchRepository.bulkIndex(indexName, animals);
+        } catch (ElasticsearchException e) {
+            job.documentsFailed(e.getFailedDocuments() != null ? e.getFailedDocuments().size() : animals.size());
+            throw e;
+        } finally {
+            bulkPermits.release();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reindex interrupted", e);
+        }
+    }
+
+    /**
+     * Get all the animals, in a random order.
+     * <p>
+     * The ranks of the animals in the id order are shuffled by a seeded permutation, and a page holds the animals
+     * of the ranks mapped to its slots: each rank is resolved to its id in the primary key index, then only these
+     * rows are read, whatever the page number. The ids are not dense (the sequence is shared and allocated
+     * by blocks), so the ranks are permuted instead of the ids: every page is full, and the total is the number
+     * of animals. Creating or deleting animals changes the order.
+     *
+     * @param seed     the seed of the random order
+     * @param pageable the pagination information, its sort is ignored
+     * @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<AnimalDTO> findAllRandom(int seed, Pageable pageable) {
+        log.debug("Request to get all Animals in random order {}", seed);
+        long count = animalRepository.count();
+        if (count == 0) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        FeistelPermutation permutation = new FeistelPermutation(count, seed);
+        List<Long> ids = new ArrayList<>();
+        long end = Math.min(pageable.getOffset() + pageable.getPageSize(), count);
+        for (long slot = pageable.getOffset(); slot < end; slot++) {
+            // An animal deleted since the count shifts the ranks after it, the last rank is then missing
+            ids.addAll(animalRepository.findIds(PageRequest.of((int) permutation.apply(slot), 1)));
+        }
+        return new PageImpl<>(findAllInOrder(ids), pageable, count);
     }
 
     /**
@@ -72,6 +365,51 @@ public class AnimalService {
             .map(animalMapper::toDto);
     }
 
+    /**
+     * Get a page of animals sorted by id, using keyset pagination.
+     * <p>
+     * The page is read with a seek on the id instead of an OFFSET, and without counting the animals,
+     * so its cost does not depend on its position in the listing.
+     *
+     * @param cursor the position in the listing, or null for the first page
+     * @param size   the number of animals to return
+     * @return the page of entities, with the cursors of the previous and next pages
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AnimalDTO> findAll(KeysetCursor cursor, int size) {
+        log.debug("Request to get all Animals after {}", cursor);
+        if (cursor == null) {
+            Slice<Animal> slice = animalRepository.findAllBy(PageRequest.of(0, size, Sort.by(Sort.Direction.ASC, "id")));
+            return keysetPage(slice.getContent(), size, false, slice.hasNext());
+        }
+        if (cursor.isAfter()) {
+            Slice<Animal> slice = animalRepository.findAllByIdGreaterThan(cursor.getId(),
+                PageRequest.of(0, size, Sort.by(Sort.Direction.ASC, "id")));
+            return keysetPage(slice.getContent(), size, true, slice.hasNext());
+        }
+        // The previous page is read backward from the cursor, then put back in the listing order
+        Slice<Animal> slice = animalRepository.findAllByIdLessThan(cursor.getId(),
+            PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "id")));
+        List<Animal> animals = new ArrayList<>(slice.getContent());
+        Collections.reverse(animals);
+        return keysetPage(animals, size, slice.hasNext(), true);
+    }
+
+    private CursorPage<AnimalDTO> keysetPage(List<Animal> animals, int size, boolean hasPrevious, boolean hasNext) {
+        String previousCursor = null;
+        String nextCursor = null;
+        if (!animals.isEmpty()) {
+            if (hasPrevious) {
+                previousCursor = KeysetCursor.before(animals.get(0).getId()).encode();
+            }
+            if (hasNext) {
+                nextCursor = KeysetCursor.after(animals.get(animals.size() - 1).getId()).encode();
+            }
+        }
+        return new CursorPage<>(animals, size, previousCursor, nextCursor)
+            .map(animalMapper::toDto);
+    }
+
 
     /**
      * Get one animal by id.
@@ -94,20 +432,439 @@ public class AnimalService {
     public void delete(Long id) {
         log.debug("Request to delete Animal : {}", id);
         animalRepository.deleteById(id);
-        animalSearchRepository.deleteById(id);
+        searchOutboxService.recordChange(EntityType.ANIMAL, id);
+        animalSearchCacheService.invalidate();
     }
 
     /**
      * Search for the animal corresponding to the query.
+     * <p>
+     * With the ids-only property, Elasticsearch only returns the ids of the animals, which are read
+     * from the second-level cache or the database.
+     * <p>
+     * The query strings of all the searches are checked before they are sent to Elasticsearch: the
+     * expensive ones are rejected with a {@link tech.ippon.hlegrand.web.rest.errors.QueryRejectedException}.
      *
-     * @param query    the query of the search
+     * @param query    the query of the search, or null for all the animals
+     * @param filter   the filters of the search
      * @param pageable the pagination information
+     * @return the list of entities, whose total is a lower bound when the shards stopped collecting early
+     * @throws tech.ippon.hlegrand.repository.search.SearchTimeoutException if the search timed out
+     */
+    @Transactional(readOnly = true)
+    public SearchPage<AnimalDTO> search(String query, AnimalSearchFilter filter, Pageable pageable) {
+        log.debug("Request to search for a page of Animals for query {} and {}", query, filter);
+        return served(animalSearchCacheService.get(SearchOrder.RELEVANCE, query, filter, null, pageable, () -> {
+            if (applicationProperties.getSearch().isIdsOnly()) {
+                SearchPage<Long> ids = animalSearchRepository.searchIds(matchQuery(query, filter), pageable);
+                return new SearchPage<>(findAllInOrder(ids.getContent()), pageable, ids.getTotalElements(),
+                    ids.isTotalHitsApproximate());
+            }
+            return animalSearchRepository.search(matchQuery(query, filter), pageable, null)
+                .map(animalMapper::toDto);
+        }));
+    }
+
+    /**
+     * Get the seed of the random order of the current user.
+     * <p>
+     * The seed carried by the JWT is rotated periodically, so that the user gets the same order on every
+     * request of the period without any state on the server. A new seed is generated for the tokens without one.
+     *
+     * @return the seed of the random order
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getShuffleSeed() {
+        return SecurityUtils.getCurrentUserShuffleSeed()
+            .map(seed -> RandomUtil.rotateSeed(seed, clock.instant(), applicationProperties.getSearch().getSeedRotationInSeconds()))
+            .orElseGet(RandomUtil::generateSeed);
+    }
+
+    /**
+     * Search for the animal corresponding to the query, in the order of the last shuffle.
+     * <p>
+     * The animals are sorted by the random rank stored in their document, which is updated for all the animals
+     * by a background job, so the order is the same for every user until the next shuffle. The query is run
+     * in filter context, nothing is scored. The pages are cached per shuffle generation, the pages of the
+     * previous shuffle are not served once the generation changes.
+     *
+     * @param query    the query of the search, or null for all the animals
+     * @param filter   the filters of the search
+     * @param pageable the pagination information, its sort is ignored
+     * @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<AnimalDTO> searchShuffled(String query, AnimalSearchFilter filter, Pageable pageable) {
+        log.debug("Request to search for a page of shuffled Animals for query {} and {}", query, filter);
+        long generation = RandomUtil.shuffleGeneration(clock.instant(), applicationProperties.getSearch().getShuffleInSeconds());
+        return served(animalSearchCacheService.get(SearchOrder.SHUFFLED, query, filter, generation, pageable, () ->
+            animalSearchRepository.searchShuffled(constantScoreQuery(matchQuery(query, filter)), pageable, shufflePreference(generation))
+                .map(animalMapper::toDto)));
+    }
+
+    /**
+     * Search for the animal corresponding to the query, in a random order.
+     * <p>
+     * The order is computed by Elasticsearch from the seed, so every page of the same
+     * (query, seed) couple is a slice of the same shuffled listing. The ordered ids of the
+     * listing are fetched in chunks as the pages reach them and cached, the pages are read from the database by id.
+     *
+     * @param query    the query of the search, or null for all the animals
+     * @param filter   the filters of the search
+     * @param seed     the seed of the random order
+     * @param pageable the pagination information, its sort is ignored
+     * @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<AnimalDTO> searchRandom(String query, AnimalSearchFilter filter, int seed, Pageable pageable) {
+        log.debug("Request to search for a random page of Animals for query {}, {} and seed {}", query, filter, seed);
+        return served(animalSearchCacheService.get(SearchOrder.RANDOM, query, filter, (long) seed, pageable, () ->
+            searchMaterialized(SearchOrder.RANDOM, query, filter, seed, randomQuery(matchQuery(query, filter), seed), pageable)));
+    }
+
+    /**
+     * Search for the animal corresponding to the query, in a random order with the promoted animals first.
+     * <p>
+     * Both tiers are shuffled with the same seed in a single Elasticsearch query: the promoted animals
+     * get an extra weight on top of their random score, and a bonus for being served less than the others.
+     *
+     * @param query    the query of the search, or null for all the animals
+     * @param filter   the filters of the search
+     * @param seed     the seed of the random order
+     * @param pageable the pagination information, its sort is ignored
+     * @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<AnimalDTO> searchPromotedFirst(String query, AnimalSearchFilter filter, int seed, Pageable pageable) {
+        log.debug("Request to search for a random page of Animals, promoted first, for query {}, {} and seed {}", query, filter, seed);
+        return served(animalSearchCacheService.get(SearchOrder.PROMOTED_FIRST, query, filter, (long) seed, pageable, () ->
+            searchMaterialized(SearchOrder.PROMOTED_FIRST, query, filter, seed, promotedFirstQuery(matchQuery(query, filter), seed),
+                pageable)));
+    }
+
+    /**
+     * Search for the animal corresponding to the query, in a random order with the promoted animals at fixed slots.
+     * <p>
+     * The promoted and the other animals are two listings shuffled with the same seed, the promoted animals served
+     * the least being more likely to come first. The listings are merged with a promoted
+     * slot every n-th position (the promoted-slot-interval property). A page only reads the range of each listing
+     * merged into it: the ranges are computed assuming that both listings fill their slots, and searched again
+     * with the totals returned when one of them runs out before the end of the page.
+     *
+     * @param query    the query of the search, or null for all the animals
+     * @param filter   the filters of the search
+     * @param seed     the seed of the random order
+     * @param pageable the pagination information, its sort is ignored
+     * @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<AnimalDTO> searchInterleaved(String query, AnimalSearchFilter filter, int seed, Pageable pageable) {
+        log.debug("Request to search for a random page of Animals, promoted interleaved, for query {}, {} and seed {}",
+            query, filter, seed);
+        return served(animalSearchCacheService.get(SearchOrder.INTERLEAVED, query, filter, (long) seed, pageable, () -> {
+            int interval = applicationProperties.getSearch().getPromotedSlotInterval();
+            long from = pageable.getOffset();
+            long to = from + pageable.getPageSize();
+            QueryBuilder promotedQuery = randomTierQuery(matchQuery(query, filter), true, seed);
+            QueryBuilder organicQuery = randomTierQuery(matchQuery(query, filter), false, seed);
+
+            SlotInterleaving guess = SlotInterleaving.unbounded(interval);
+            Page<Animal> promoted = searchRange(promotedQuery, guess.promotedBefore(from), guess.promotedBefore(to), seed);
+            Page<Animal> organic = searchRange(organicQuery, guess.organicBefore(from), guess.organicBefore(to), seed);
+            SlotInterleaving slots = new SlotInterleaving(interval, promoted.getTotalElements(), organic.getTotalElements());
+            long end = Math.min(to, slots.size());
+            // A range already read is kept when it starts at the right position and covers the page
+            if (from < end && (slots.promotedBefore(from) != guess.promotedBefore(from)
+                || slots.promotedBefore(end) > guess.promotedBefore(to))) {
+                promoted = searchRange(promotedQuery, slots.promotedBefore(from), slots.promotedBefore(end), seed);
+            }
+            if (from < end && (slots.organicBefore(from) != guess.organicBefore(from)
+                || slots.organicBefore(end) > guess.organicBefore(to))) {
+                organic = searchRange(organicQuery, slots.organicBefore(from), slots.organicBefore(end), seed);
+            }
+
+            List<AnimalDTO> animals = new ArrayList<>();
+            Iterator<Animal> promotedAnimals = promoted.iterator();
+            Iterator<Animal> organicAnimals = organic.iterator();
+            for (long position = from; position < end; position++) {
+                Iterator<Animal> tier = slots.isPromoted(position) ? promotedAnimals : organicAnimals;
+                // An animal changed between the searches of its listing: the page ends early rather than shift
+                if (!tier.hasNext()) {
+                    break;
+                }
+                animals.add(animalMapper.toDto(tier.next()));
+            }
+            return new PageImpl<>(animals, pageable, slots.size());
+        }));
+    }
+
+    /**
+     * Get a random sample of the animals, optionally restricted to a query and to the promoted or other animals.
+     * <p>
+     * The sample is the first page of a seeded random query, so Elasticsearch only returns the sampled
+     * documents and the database is not read.
+     *
+     * @param query    the query the animals must match, or null for all the animals
+     * @param promoted the promoted flag the animals must have, or null for both
+     * @param seed     the seed of the random order
+     * @param size     the number of animals to return, capped by the max-sample-size property
      * @return the list of entities
      */
     @Transactional(readOnly = true)
-    public Page<AnimalDTO> search(String query, Pageable pageable) {
-        log.debug("Request to search for a page of Animals for query {}", query);
-        return animalSearchRepository.search(queryStringQuery(query), pageable)
+    public List<AnimalDTO> sample(String query, Boolean promoted, int seed, int size) {
+        log.debug("Request to get a sample of {} Animals for query {}, promoted {} and seed {}", size, query, promoted, seed);
+        BoolQueryBuilder filter = boolQuery();
+        if (query != null) {
+            filter.filter(queryString(query));
+        }
+        if (promoted != null) {
+            filter.filter(termQuery("promoted", promoted));
+        }
+        QueryBuilder sampleQuery = functionScoreQuery(filter, randomFunction(seed))
+            .boostMode(CombineFunction.REPLACE);
+        int sampleSize = Math.min(size, applicationProperties.getSearch().getMaxSampleSize());
+        return served(animalSearchRepository.search(sampleQuery, randomPageable(PageRequest.of(0, sampleSize)), preference(seed))
+            .map(animalMapper::toDto))
+            .getContent();
+    }
+
+    /**
+     * Search for the animal corresponding to the query, starting after the cursor.
+     * <p>
+     * The page is fetched with an Elasticsearch search_after on (score, id), so its cost does not
+     * depend on its position in the listing. The order and seed are carried by the cursor. The previous
+     * page is read backward from the first animal of the page, then put back in the listing order.
+     *
+     * @param query  the query of the search, or null for all the animals
+     * @param filter the filters of the search
+     * @param cursor the position in the listing
+     * @param size   the number of animals to return
+     * @return the page of entities, with the cursors of the previous and next pages and the total bounded by the
+     * track-total-hits property
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AnimalDTO> searchAfter(String query, AnimalSearchFilter filter, SearchCursor cursor, int size) {
+        log.debug("Request to search for a page of Animals for query {} and {} after {}", query, filter, cursor);
+        String preference = cursor.getOrder().isRandom() ? preference(cursor.getSeed()) : null;
+        QueryBuilder searchQuery = searchQuery(matchQuery(query, filter), cursor.getOrder(), cursor.getSeed());
+        SearchAfterPage<Animal> hits = animalSearchRepository.searchAfter(searchQuery, size,
+            applicationProperties.getSearch().getTrackTotalHits(), cursor.getScore(), cursor.getId(), !cursor.isAfter(), preference);
+        String previousCursor = null;
+        String nextCursor = null;
+        if (!hits.getContent().isEmpty()) {
+            // The animal of the cursor is on the side the page was not read from
+            boolean hasPrevious = cursor.isAfter() ? !cursor.isFirst() : hits.hasMore();
+            boolean hasNext = !cursor.isAfter() || hits.hasMore();
+            if (hasPrevious) {
+                previousCursor = cursor.before(hits.getFirstScore(), hits.getFirstId()).encode();
+            }
+            if (hasNext) {
+                nextCursor = cursor.after(hits.getLastScore(), hits.getLastId()).encode();
+            }
+        }
+        CursorPage<AnimalDTO> page = new CursorPage<>(hits.getContent(), size, previousCursor, nextCursor, hits.getTotalHits(),
+            hits.isTotalHitsApproximate())
             .map(animalMapper::toDto);
+        impressionService.served(page.getContent());
+        return page;
+    }
+
+    /**
+     * Count the impressions of the promoted animals of a page, including the pages served from the cache.
+     */
+    private <P extends Page<AnimalDTO>> P served(P page) {
+        impressionService.served(page.getContent());
+        return page;
+    }
+
+    /**
+     * Check the query string before it is sent to Elasticsearch, and bound the expansion of its fuzzy terms.
+     *
+     * @throws tech.ippon.hlegrand.web.rest.errors.QueryRejectedException if the query string is too expensive
+     */
+    private QueryBuilder queryString(String query) {
+        queryStringGuard.check(query);
+        ApplicationProperties.Search search = applicationProperties.getSearch();
+        return queryStringQuery(query)
+            .allowLeadingWildcard(false)
+            .fuzzyPrefixLength(search.getFuzzyPrefixLength())
+            .fuzzyMaxExpansions(search.getFuzzyMaxExpansions());
+    }
+
+    private QueryBuilder searchQuery(QueryBuilder query, SearchOrder order, int seed) {
+        switch (order) {
+            case RANDOM:
+                return randomQuery(query, seed);
+            case PROMOTED_FIRST:
+                return promotedFirstQuery(query, seed);
+            case SHUFFLED:
+                // The cursors sort on the score, so the random rank is read as the score
+                return functionScoreQuery(query, fieldValueFactorFunction(AnimalSearchRepository.RANDOM_RANK_FIELD).missing(0))
+                    .boostMode(CombineFunction.REPLACE);
+            default:
+                return query;
+        }
+    }
+
+    /**
+     * Compile the query string and the filters to the query matching the animals.
+     * <p>
+     * The filters are clauses in filter context: Elasticsearch neither scores them nor parses a query string,
+     * and caches their matching documents. Without filters, this is only the query string.
+     */
+    private QueryBuilder matchQuery(String query, AnimalSearchFilter filter) {
+        QueryBuilder queryString = query != null ? queryString(query) : matchAllQuery();
+        if (filter.isEmpty()) {
+            return queryString;
+        }
+        BoolQueryBuilder match = boolQuery();
+        if (query != null) {
+            match.must(queryString);
+        }
+        if (filter.getPromoted() != null) {
+            match.filter(termQuery("promoted", filter.getPromoted()));
+        }
+        if (filter.getNamePrefix() != null) {
+            // The name is analyzed: the prefix matches the start of any of its lowercased words
+            match.filter(prefixQuery("name", filter.getNamePrefix().toLowerCase(Locale.ROOT)));
+        }
+        if (filter.getMinId() != null || filter.getMaxId() != null) {
+            match.filter(rangeQuery("id").gte(filter.getMinId()).lte(filter.getMaxId()));
+        }
+        return match;
+    }
+
+    /**
+     * Get a page of a random search by slicing its ordered ids, so that the scored query runs once per chunk
+     * of the listing whatever the number of pages read. The ids are only read up to the chunk holding the page,
+     * the later pages continue after the last cached id. The pages beyond the ids kept are searched in Elasticsearch.
+     */
+    private Page<AnimalDTO> searchMaterialized(SearchOrder order, String query, AnimalSearchFilter filter, int seed,
+                                               QueryBuilder searchQuery, Pageable pageable) {
+        int maxIds = applicationProperties.getSearch().getMaxMaterializedIds();
+        if (pageable.getOffset() + pageable.getPageSize() > maxIds) {
+            return animalSearchRepository.search(searchQuery, randomPageable(pageable), preference(seed))
+                .map(animalMapper::toDto);
+        }
+        long count = pageable.getOffset() + pageable.getPageSize();
+        SearchIds searchIds = animalSearchCacheService.getIds(order, query, filter, seed, count, cached -> {
+            // The ids are read up to the chunk holding the end of the page, in a single request after the cached ones
+            int target = (int) Math.min(maxIds, (count + IDS_CHUNK_SIZE - 1) / IDS_CHUNK_SIZE * IDS_CHUNK_SIZE);
+            if (cached == null) {
+                return animalSearchRepository.searchIds(searchQuery, target, null, null, preference(seed));
+            }
+            return cached.append(animalSearchRepository.searchIds(searchQuery, target - cached.getIds().length,
+                cached.getLastScore(), cached.getLastId(), preference(seed)));
+        });
+        long[] ids = searchIds.getIds();
+        int from = (int) Math.min(pageable.getOffset(), ids.length);
+        int to = Math.min(from + pageable.getPageSize(), ids.length);
+        List<Long> pageIds = Arrays.stream(ids, from, to).boxed().collect(Collectors.toList());
+        return new PageImpl<>(findAllInOrder(pageIds), pageable, searchIds.getTotalHits());
+    }
+
+    /**
+     * Read the animals by id, in the order of the ids. The ids of deleted animals are skipped.
+     * <p>
+     * The animals in the second-level cache are read from it, the others with a single IN query.
+     */
+    private List<AnimalDTO> findAllInOrder(List<Long> ids) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        Map<Long, Animal> animals = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : ids) {
+            Animal animal = cache.contains(Animal.class, id) ? entityManager.find(Animal.class, id) : null;
+            if (animal != null) {
+                animals.put(id, animal);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            animalRepository.findAllById(missingIds).forEach(animal -> animals.put(animal.getId(), animal));
+        }
+        return ids.stream()
+            .map(animals::get)
+            .filter(Objects::nonNull)
+            .map(animalMapper::toDto)
+            .collect(Collectors.toList());
+    }
+
+    private QueryBuilder promotedFirstQuery(QueryBuilder query, int seed) {
+        FilterFunctionBuilder[] functions = {
+            new FilterFunctionBuilder(randomFunction(seed)),
+            new FilterFunctionBuilder(termQuery("promoted", true), weightFactorFunction(PROMOTED_WEIGHT)),
+            new FilterFunctionBuilder(termQuery("promoted", true), impressionBalance())
+        };
+        return functionScoreQuery(query, functions)
+            .scoreMode(FiltersFunctionScoreQuery.ScoreMode.SUM)
+            .boostMode(CombineFunction.REPLACE);
+    }
+
+    private QueryBuilder randomTierQuery(QueryBuilder query, boolean promoted, int seed) {
+        BoolQueryBuilder tier = boolQuery()
+            .must(query)
+            .filter(termQuery("promoted", promoted));
+        if (!promoted) {
+            return functionScoreQuery(tier, randomFunction(seed))
+                .boostMode(CombineFunction.REPLACE);
+        }
+        FilterFunctionBuilder[] functions = {
+            new FilterFunctionBuilder(randomFunction(seed)),
+            new FilterFunctionBuilder(impressionBalance())
+        };
+        return functionScoreQuery(tier, functions)
+            .scoreMode(FiltersFunctionScoreQuery.ScoreMode.MULTIPLY)
+            .boostMode(CombineFunction.REPLACE);
+    }
+
+    /**
+     * A score between 0 and 1 decreasing with the impressions of the animal, halved at impressions-scale impressions,
+     * so that the promoted animals served the least get the highest random scores. The impressions are the ones
+     * counted at the last shuffle, so the score does not change while a listing is paged through. The animals
+     * never counted, or all of them before the first shuffle maps the field, score 1.
+     */
+    private ScoreFunctionBuilder<?> impressionBalance() {
+        Map<String, Object> params = Collections.singletonMap("scale",
+            (double) applicationProperties.getSearch().getImpressionsScale());
+        return scriptFunction(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, IMPRESSION_BALANCE_SCRIPT, params));
+    }
+
+    /**
+     * Search for the animals between two positions of a random listing, the total is returned even for an empty range.
+     */
+    private Page<Animal> searchRange(QueryBuilder query, long from, long to, int seed) {
+        OffsetPageRequest range = new OffsetPageRequest(from, (int) (to - from),
+            Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id")));
+        return animalSearchRepository.search(query, range, preference(seed));
+    }
+
+    private QueryBuilder randomQuery(QueryBuilder query, int seed) {
+        return functionScoreQuery(query, randomFunction(seed))
+            .boostMode(CombineFunction.REPLACE);
+    }
+
+    /**
+     * The seeded searches are deterministic, so the searches of a seed are sent to the same shard copies:
+     * the random scores are the same on every page, and the shard request caches serve the repeated pages.
+     */
+    private String preference(int seed) {
+        return Integer.toString(seed);
+    }
+
+    /**
+     * The shuffled order only changes with the shuffle generation, so the searches of a generation are sent
+     * to the same shard copies, whose request caches serve the repeated pages.
+     */
+    private String shufflePreference(long generation) {
+        return "shuffle-" + generation;
+    }
+
+    /**
+     * Random scores can collide, the id is used as a tie-breaker to keep the order stable across pages.
+     */
+    private Pageable randomPageable(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+            Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id")));
     }
 }
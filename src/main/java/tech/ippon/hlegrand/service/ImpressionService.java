@@ -0,0 +1,135 @@
+package tech.ippon.hlegrand.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.ippon.hlegrand.repository.AnimalImpressionRepository;
+import tech.ippon.hlegrand.service.dto.AnimalDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service counting the impressions of the promoted animals served by the searches.
+ * <p>
+ * The impressions are counted in memory, with one striped counter per animal so that the searches never
+ * contend on a lock, and are flushed periodically: the counts of all the animals served since the last
+ * flush are added in the database in one batch of upserts. The counters with nothing to flush are removed,
+ * so that only the animals recently served are kept in memory. The flush does not write to Elasticsearch: the
+ * RandomRankService copies the counts to the documents at each shuffle, where they lower the random score
+ * of the most served promoted animals, so that the listings keep their order while they are paged through.
+ */
+@Service
+public class ImpressionService {
+
+    private final Logger log = LoggerFactory.getLogger(ImpressionService.class);
+
+    private final AnimalImpressionRepository animalImpressionRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The counters removed by the last flush, read once more by the next one: a search may have got one of them
+     * just before its removal, and added its impression just after.
+     */
+    private List<Counter> retired = new ArrayList<>();
+
+    public ImpressionService(AnimalImpressionRepository animalImpressionRepository, PlatformTransactionManager transactionManager) {
+        this.animalImpressionRepository = animalImpressionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Count an impression of each promoted animal served.
+     *
+     * @param animals the animals served by a search
+     */
+    public void served(Collection<AnimalDTO> animals) {
+        for (AnimalDTO animal : animals) {
+            if (Boolean.TRUE.equals(animal.isPromoted())) {
+                counters.computeIfAbsent(animal.getId(), Counter::new).served.increment();
+            }
+        }
+    }
+
+    /**
+     * Add the impressions counted since the last flush in the database.
+     * <p>
+     * This is scheduled to run with the configured delay between two flushes. When the database
+     * transaction fails, the impressions are kept for the next flush.
+     *
+     * @return the number of animals whose impressions were flushed
+     */
+    @Scheduled(initialDelayString = "${application.search.impressions-flush-delay:10000}",
+        fixedDelayString = "${application.search.impressions-flush-delay:10000}")
+    public synchronized int flush() {
+        Map<Counter, Long> drained = new IdentityHashMap<>();
+        List<Counter> idle = new ArrayList<>();
+        counters.forEach((id, counter) -> {
+            long count = counter.unflushed();
+            if (count > 0) {
+                drained.put(counter, count);
+            } else if (counters.remove(id, counter)) {
+                idle.add(counter);
+            }
+        });
+        for (Counter counter : retired) {
+            long count = counter.unflushed();
+            if (count > 0) {
+                drained.put(counter, count);
+                // Kept until a flush finds nothing more in it
+                idle.add(counter);
+            }
+        }
+        retired = idle;
+        if (drained.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        drained.forEach((counter, count) -> counts.merge(counter.animalId, count, Long::sum));
+        log.debug("Flushing the impressions of {} animals", counts.size());
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                animalImpressionRepository.addImpressions(counts);
+            }
+        });
+        drained.forEach((counter, count) -> counter.flushed += count);
+        return counts.size();
+    }
+
+    /**
+     * The impressions of an animal: the served count is incremented by the searches, the flushed count
+     * is only read and written by the flush, so that no impression is lost between the two.
+     */
+    private static final class Counter {
+
+        private final Long animalId;
+
+        private final LongAdder served = new LongAdder();
+
+        private long flushed;
+
+        private Counter(Long animalId) {
+            this.animalId = animalId;
+        }
+
+        private long unflushed() {
+            return served.sum() - flushed;
+        }
+    }
+}
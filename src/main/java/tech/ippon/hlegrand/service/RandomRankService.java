@@ -0,0 +1,133 @@
+package tech.ippon.hlegrand.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.ippon.hlegrand.config.ApplicationProperties;
+import tech.ippon.hlegrand.domain.AnimalImpression;
+import tech.ippon.hlegrand.domain.RandomRankShuffle;
+import tech.ippon.hlegrand.repository.AnimalImpressionRepository;
+import tech.ippon.hlegrand.repository.AnimalRepository;
+import tech.ippon.hlegrand.repository.RandomRankShuffleRepository;
+import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+import tech.ippon.hlegrand.service.util.RandomUtil;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Service shuffling the animals in Elasticsearch, by rewriting their random rank once per shuffle generation.
+ * <p>
+ * The rank of an animal only depends on its id and on the generation, so that the writers compute the same
+ * ranks without coordination. The nodes claim each generation in the database, so that only one of them
+ * rewrites all the documents. A node stopped while shuffling leaves the ranks of the previous generation
+ * until the next one.
+ * <p>
+ * The impressions of the promoted animals are copied to the documents with the ranks: the searches score with
+ * the impressions counted at the last shuffle, so that their order only changes with the shuffle.
+ */
+@Service
+public class RandomRankService {
+
+    private final Logger log = LoggerFactory.getLogger(RandomRankService.class);
+
+    private final AnimalRepository animalRepository;
+
+    private final AnimalSearchRepository animalSearchRepository;
+
+    private final AnimalSearchCacheService animalSearchCacheService;
+
+    private final RandomRankShuffleRepository randomRankShuffleRepository;
+
+    private final AnimalImpressionRepository animalImpressionRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final Clock clock;
+
+    private final TransactionTemplate transaction;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    public RandomRankService(AnimalRepository animalRepository, AnimalSearchRepository animalSearchRepository,
+                             AnimalSearchCacheService animalSearchCacheService,
+                             RandomRankShuffleRepository randomRankShuffleRepository,
+                             AnimalImpressionRepository animalImpressionRepository,
+                             ApplicationProperties applicationProperties, Clock clock,
+                             PlatformTransactionManager transactionManager) {
+        this.animalRepository = animalRepository;
+        this.animalSearchRepository = animalSearchRepository;
+        this.animalSearchCacheService = animalSearchCacheService;
+        this.randomRankShuffleRepository = randomRankShuffleRepository;
+        this.animalImpressionRepository = animalImpressionRepository;
+        this.applicationProperties = applicationProperties;
+        this.clock = clock;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Shuffle the animals when a new generation has started, unless another node already claimed it.
+     * <p>
+     * This is scheduled to run with the configured delay between two checks.
+     */
+    @Scheduled(initialDelayString = "${application.search.shuffle-check-delay:60000}",
+        fixedDelayString = "${application.search.shuffle-check-delay:60000}")
+    public void shuffleIfNeeded() {
+        long generation = RandomUtil.shuffleGeneration(clock.instant(),
+            applicationProperties.getSearch().getShuffleInSeconds());
+        Integer claimed = transaction.execute(status ->
+            randomRankShuffleRepository.claim(RandomRankShuffle.ID, generation, clock.instant()));
+        if (claimed == null || claimed == 0) {
+            return;
+        }
+        try {
+            shuffle(generation);
+        } catch (RuntimeException e) {
+            transaction.execute(status -> randomRankShuffleRepository.release(RandomRankShuffle.ID, generation, generation - 1));
+            throw e;
+        }
+    }
+
+    /**
+     * Rewrite the random rank of all the animals for a generation, one chunk of ids at a time,
+     * with the impressions counted when the shuffle starts.
+     *
+     * @param generation the shuffle generation
+     * @return the number of animals shuffled
+     */
+    public long shuffle(long generation) {
+        log.debug("Request to shuffle the animals for the generation {}", generation);
+        int chunkSize = applicationProperties.getReindex().getChunkSize();
+        transaction.execute(status -> animalImpressionRepository.snapshotImpressions());
+        long shuffled = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            Long lastId = Long.MIN_VALUE;
+            List<Long> ids;
+            do {
+                ids = animalRepository.findIdsGreaterThan(lastId, PageRequest.of(0, chunkSize));
+                if (!ids.isEmpty()) {
+                    animalSearchRepository.updateRandomRanks(ids, generation, shuffledImpressions(ids));
+                    count += ids.size();
+                    lastId = ids.get(ids.size() - 1);
+                }
+            } while (ids.size() == chunkSize);
+            return count;
+        });
+        animalSearchCacheService.invalidate();
+        log.info("Shuffled {} animals for the generation {}", shuffled, generation);
+        return shuffled;
+    }
+
+    private Map<Long, Long> shuffledImpressions(List<Long> ids) {
+        return animalImpressionRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(AnimalImpression::getAnimalId, AnimalImpression::getShuffledImpressions));
+    }
+}
@@ -0,0 +1,132 @@
+package tech.ippon.hlegrand.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a reindex of all the animals, updated by the thread running it and read by the others.
+ */
+public class ReindexJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+
+    private final Clock clock;
+
+    private final Instant startDate;
+
+    private volatile Status status = Status.RUNNING;
+
+    private volatile Instant endDate;
+
+    private volatile long totalDocuments;
+
+    private final AtomicLong documentsRead = new AtomicLong();
+
+    private final AtomicLong documentsIndexed = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private volatile String errorMessage;
+
+    public ReindexJob(String id, Clock clock) {
+        this.id = id;
+        this.clock = clock;
+        this.startDate = clock.instant();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+    public Instant getEndDate() {
+        return endDate;
+    }
+
+    public long getTotalDocuments() {
+        return totalDocuments;
+    }
+
+    public long getDocumentsRead() {
+        return documentsRead.get();
+    }
+
+    public long getDocumentsIndexed() {
+        return documentsIndexed.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return the number of documents indexed per second since the start of the job
+     */
+    public double getThroughput() {
+        long millis = Duration.between(startDate, endDate != null ? endDate : clock.instant()).toMillis();
+        return millis == 0 ? 0 : getDocumentsIndexed() * 1000d / millis;
+    }
+
+    /**
+     * @return the end date extrapolated from the throughput, or null if it can not be estimated yet
+     */
+    public Instant getEstimatedEndDate() {
+        if (!isRunning()) {
+            return endDate;
+        }
+        double throughput = getThroughput();
+        if (throughput == 0) {
+            return null;
+        }
+        long remaining = Math.max(totalDocuments - getDocumentsIndexed(), 0);
+        return clock.instant().plusMillis((long) (remaining * 1000 / throughput));
+    }
+
+    void setTotalDocuments(long totalDocuments) {
+        this.totalDocuments = totalDocuments;
+    }
+
+    void documentsRead(int count) {
+        documentsRead.addAndGet(count);
+    }
+
+    void documentsIndexed(int count) {
+        documentsIndexed.addAndGet(count);
+    }
+
+    void documentsFailed(int count) {
+        errors.addAndGet(count);
+    }
+
+    void complete() {
+        endDate = clock.instant();
+        status = Status.COMPLETED;
+    }
+
+    void fail(Exception e) {
+        errorMessage = e.getMessage();
+        endDate = clock.instant();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,108 @@
+package tech.ippon.hlegrand.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import tech.ippon.hlegrand.service.dto.ReindexJobDTO;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Service running the reindex of the animals in the background and keeping track of the last jobs.
+ * <p>
+ * The jobs are only kept in the memory of this instance: the other instances neither know them nor
+ * prevent a second reindex from starting, so the reindex is meant to be started and followed on a single instance.
+ */
+@Service
+public class ReindexService {
+
+    private static final int MAX_JOBS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(ReindexService.class);
+
+    private final AnimalService animalService;
+
+    private final Executor taskExecutor;
+
+    private final Clock clock;
+
+    private final Map<String, ReindexJob> jobs = new LinkedHashMap<String, ReindexJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ReindexJob> eldest) {
+            return size() > MAX_JOBS;
+        }
+    };
+
+    private ReindexJob currentJob;
+
+    public ReindexService(AnimalService animalService, @Qualifier("taskExecutor") Executor taskExecutor, Clock clock) {
+        this.animalService = animalService;
+        this.taskExecutor = taskExecutor;
+        this.clock = clock;
+    }
+
+    /**
+     * Start a reindex of all the animals, unless one is already running.
+     *
+     * @return the job started, or the one already running
+     */
+    public synchronized ReindexJobDTO start() {
+        if (currentJob != null && currentJob.isRunning()) {
+            log.debug("Reindex job {} is already running", currentJob.getId());
+            return new ReindexJobDTO(currentJob);
+        }
+        ReindexJob job = new ReindexJob(UUID.randomUUID().toString(), clock);
+        jobs.put(job.getId(), job);
+        currentJob = job;
+        try {
+            taskExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            job.fail(e);
+            throw e;
+        }
+        log.debug("Started reindex job {}", job.getId());
+        return new ReindexJobDTO(job);
+    }
+
+    /**
+     * Get a reindex job by id.
+     *
+     * @param id the id of the job
+     * @return the progress of the job
+     */
+    public synchronized Optional<ReindexJobDTO> findOne(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(ReindexJobDTO::new);
+    }
+
+    /**
+     * Get the last reindex jobs, the most recent last.
+     *
+     * @return the progress of the jobs
+     */
+    public synchronized List<ReindexJobDTO> findAll() {
+        return new ArrayList<>(jobs.values()).stream()
+            .map(ReindexJobDTO::new)
+            .collect(Collectors.toList());
+    }
+
+    private void run(ReindexJob job) {
+        try {
+            animalService.reindexAll(job);
+            job.complete();
+            log.info("Reindex job {} completed: {} animals indexed", job.getId(), job.getDocumentsIndexed());
+        } catch (RuntimeException e) {
+            job.fail(e);
+            log.error("Reindex job {} failed", job.getId(), e);
+        }
+    }
+}
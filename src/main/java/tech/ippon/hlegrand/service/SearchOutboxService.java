@@ -0,0 +1,249 @@
+package tech.ippon.hlegrand.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.ippon.hlegrand.config.ApplicationProperties;
+import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent.EntityType;
+import tech.ippon.hlegrand.domain.SearchOutboxLease;
+import tech.ippon.hlegrand.domain.User;
+import tech.ippon.hlegrand.repository.AnimalRepository;
+import tech.ippon.hlegrand.repository.SearchOutboxEventRepository;
+import tech.ippon.hlegrand.repository.SearchOutboxLeaseRepository;
+import tech.ippon.hlegrand.repository.UserRepository;
+import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+import tech.ippon.hlegrand.repository.search.UserSearchRepository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Service copying the changes of the entities to Elasticsearch, through a transactional outbox.
+ * <p>
+ * The changes are recorded in the database by the transactions writing the entities, and sent
+ * to Elasticsearch in batches by a scheduled task: writes do not wait for Elasticsearch, and a change
+ * which could not be sent is kept to be sent again on the next run. A change Elasticsearch keeps refusing
+ * is parked after the max-attempts property failures, so that it does not block the others.
+ * <p>
+ * A single node sends the changes at a time: it claims a lease in the database before each batch, the other
+ * nodes skip their runs until it is released or expires. Two nodes would otherwise send the same changes,
+ * and the older state of an entity read by one could reach Elasticsearch after the newer one read by the other.
+ */
+@Service
+public class SearchOutboxService {
+
+    private final Logger log = LoggerFactory.getLogger(SearchOutboxService.class);
+
+    private final SearchOutboxEventRepository searchOutboxEventRepository;
+
+    private final AnimalRepository animalRepository;
+
+    private final AnimalSearchRepository animalSearchRepository;
+
+    private final UserRepository userRepository;
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final AnimalSearchCacheService animalSearchCacheService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final SearchOutboxLeaseRepository searchOutboxLeaseRepository;
+
+    private final Clock clock;
+
+    private final TransactionTemplate transaction;
+
+    /**
+     * The owner of the lease when this node holds it.
+     */
+    private final String leaseOwner = UUID.randomUUID().toString();
+
+    public SearchOutboxService(SearchOutboxEventRepository searchOutboxEventRepository, AnimalRepository animalRepository,
+                               AnimalSearchRepository animalSearchRepository, UserRepository userRepository,
+                               UserSearchRepository userSearchRepository, AnimalSearchCacheService animalSearchCacheService,
+                               ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager,
+                               SearchOutboxLeaseRepository searchOutboxLeaseRepository, Clock clock) {
+        this.searchOutboxEventRepository = searchOutboxEventRepository;
+        this.animalRepository = animalRepository;
+        this.animalSearchRepository = animalSearchRepository;
+        this.userRepository = userRepository;
+        this.userSearchRepository = userSearchRepository;
+        this.animalSearchCacheService = animalSearchCacheService;
+        this.applicationProperties = applicationProperties;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.searchOutboxLeaseRepository = searchOutboxLeaseRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Record that an entity was created, updated or deleted, in the transaction which changed it.
+     *
+     * @param entityType the type of the entity
+     * @param entityId   the id of the entity
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChange(EntityType entityType, Long entityId) {
+        log.debug("Request to record the change of {} : {}", entityType, entityId);
+        searchOutboxEventRepository.save(new SearchOutboxEvent(entityType, entityId));
+    }
+
+    /**
+     * Send the recorded changes to Elasticsearch, one batch per transaction, until there is none left.
+     * <p>
+     * This is scheduled to run continuously, with the configured delay between two runs. The run stops
+     * when another node holds the lease.
+     */
+    @Scheduled(initialDelayString = "${application.search-outbox.drain-delay:1000}",
+        fixedDelayString = "${application.search-outbox.drain-delay:1000}")
+    public void drain() {
+        int batchSize = applicationProperties.getSearchOutbox().getBatchSize();
+        try {
+            int drained;
+            do {
+                if (!claimLease()) {
+                    log.debug("Another node is sending the changes to Elasticsearch");
+                    return;
+                }
+                try {
+                    drained = transaction.execute(status -> send(findPending(batchSize)));
+                } catch (RuntimeException e) {
+                    log.warn("Failed to send a batch of changes to Elasticsearch, sending them one entity at a time: {}",
+                        e.getMessage());
+                    drained = drainEachEntity(batchSize);
+                }
+            } while (drained == batchSize);
+        } finally {
+            transaction.execute(status -> searchOutboxLeaseRepository.release(SearchOutboxLease.ID, leaseOwner));
+        }
+    }
+
+    /**
+     * Claim the lease, or renew it when this node already holds it, in its own transaction so that the other
+     * nodes see it before the batch is sent.
+     */
+    private boolean claimLease() {
+        Instant now = clock.instant();
+        Integer claimed = transaction.execute(status -> searchOutboxLeaseRepository.claim(SearchOutboxLease.ID, leaseOwner,
+            now, now.plusSeconds(applicationProperties.getSearchOutbox().getLeaseInSeconds())));
+        return claimed != null && claimed > 0;
+    }
+
+    /**
+     * Send the changes of each entity of a batch in its own transaction, so that the failures of an entity
+     * do not prevent sending the others, and record the failures.
+     * <p>
+     * When no entity could be sent and Elasticsearch did not report which documents failed, it is considered
+     * unavailable: the failure is thrown without being recorded against the changes, to be retried on the next run.
+     *
+     * @return the number of changes sent
+     */
+    private int drainEachEntity(int batchSize) {
+        List<SearchOutboxEvent> events = transaction.execute(status -> findPending(batchSize));
+        Map<EntityType, Map<Long, List<SearchOutboxEvent>>> eventsByEntity = events.stream()
+            .collect(groupingBy(SearchOutboxEvent::getEntityType, groupingBy(SearchOutboxEvent::getEntityId)));
+        int sent = 0;
+        Map<List<SearchOutboxEvent>, RuntimeException> failures = new LinkedHashMap<>();
+        for (Map<Long, List<SearchOutboxEvent>> entities : eventsByEntity.values()) {
+            for (List<SearchOutboxEvent> entityEvents : entities.values()) {
+                try {
+                    sent += transaction.execute(status -> send(entityEvents));
+                } catch (RuntimeException e) {
+                    failures.put(entityEvents, e);
+                }
+            }
+        }
+        if (sent == 0 && failures.values().stream().noneMatch(SearchOutboxService::hasFailedDocuments)) {
+            throw failures.values().iterator().next();
+        }
+        failures.forEach((entityEvents, e) -> transaction.execute(status -> recordFailure(entityEvents, e)));
+        return sent;
+    }
+
+    private List<SearchOutboxEvent> findPending(int batchSize) {
+        return searchOutboxEventRepository.findAllByAttemptsLessThanOrderByIdAsc(
+            applicationProperties.getSearchOutbox().getMaxAttempts(), PageRequest.of(0, batchSize));
+    }
+
+    private List<SearchOutboxEvent> recordFailure(List<SearchOutboxEvent> events, RuntimeException e) {
+        int maxAttempts = applicationProperties.getSearchOutbox().getMaxAttempts();
+        String error = e.getMessage() != null && e.getMessage().length() > 255 ? e.getMessage().substring(0, 255) : e.getMessage();
+        for (SearchOutboxEvent event : events) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(error);
+            if (event.getAttempts() >= maxAttempts) {
+                log.error("Parking the change of {} : {} after {} failures: {}", event.getEntityType(), event.getEntityId(),
+                    event.getAttempts(), error);
+            }
+        }
+        return searchOutboxEventRepository.saveAll(events);
+    }
+
+    private static boolean hasFailedDocuments(RuntimeException e) {
+        return e instanceof ElasticsearchException && ((ElasticsearchException) e).getFailedDocuments() != null
+            && !((ElasticsearchException) e).getFailedDocuments().isEmpty();
+    }
+
+    private int send(List<SearchOutboxEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        log.debug("Sending {} changes to Elasticsearch", events.size());
+        Map<EntityType, Set<Long>> ids = events.stream()
+            .collect(groupingBy(SearchOutboxEvent::getEntityType, mapping(SearchOutboxEvent::getEntityId, toSet())));
+        Set<Long> animalIds = ids.getOrDefault(EntityType.ANIMAL, Collections.emptySet());
+        synchronize(animalIds, animalRepository, animalSearchRepository::indexAll, animalSearchRepository::deleteAllById,
+            Animal::getId);
+        if (!animalIds.isEmpty()) {
+            // The cached search results were computed before the changes reached Elasticsearch
+            animalSearchCacheService.invalidate();
+        }
+        synchronize(ids.getOrDefault(EntityType.USER, Collections.emptySet()), userRepository,
+            userSearchRepository::saveAll, deletedIds -> deletedIds.forEach(userSearchRepository::deleteById), User::getId);
+        searchOutboxEventRepository.deleteInBatch(events);
+        return events.size();
+    }
+
+    /**
+     * Index the current state of the entities, or delete them from Elasticsearch when they no longer exist,
+     * so that the order of the events does not matter.
+     */
+    private <T> void synchronize(Set<Long> ids, JpaRepository<T, Long> repository, Consumer<List<T>> index,
+                                 Consumer<Set<Long>> delete, Function<T, Long> getId) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<T> entities = repository.findAllById(ids);
+        if (!entities.isEmpty()) {
+            index.accept(entities);
+        }
+        Set<Long> deletedIds = new HashSet<>(ids);
+        entities.forEach(entity -> deletedIds.remove(getId.apply(entity)));
+        if (!deletedIds.isEmpty()) {
+            delete.accept(deletedIds);
+        }
+    }
+}
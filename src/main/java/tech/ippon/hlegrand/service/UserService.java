@@ -2,10 +2,10 @@ package tech.ippon.hlegrand.service;
 
 import tech.ippon.hlegrand.config.Constants;
 import tech.ippon.hlegrand.domain.Authority;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent.EntityType;
 import tech.ippon.hlegrand.domain.User;
 import tech.ippon.hlegrand.repository.AuthorityRepository;
 import tech.ippon.hlegrand.repository.UserRepository;
-import tech.ippon.hlegrand.repository.search.UserSearchRepository;
 import tech.ippon.hlegrand.security.AuthoritiesConstants;
 import tech.ippon.hlegrand.security.SecurityUtils;
 import tech.ippon.hlegrand.service.dto.UserDTO;
@@ -40,16 +40,16 @@ public class UserService {
 
     private final PasswordEncoder passwordEncoder;
 
-    private final UserSearchRepository userSearchRepository;
+    private final SearchOutboxService searchOutboxService;
 
     private final AuthorityRepository authorityRepository;
 
     private final CacheManager cacheManager;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, UserSearchRepository userSearchRepository, AuthorityRepository authorityRepository, CacheManager cacheManager) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, SearchOutboxService searchOutboxService, AuthorityRepository authorityRepository, CacheManager cacheManager) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.userSearchRepository = userSearchRepository;
+        this.searchOutboxService = searchOutboxService;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
     }
@@ -61,7 +61,7 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
-                userSearchRepository.save(user);
+                searchOutboxService.recordChange(EntityType.USER, user.getId());
                 this.clearUserCaches(user);
                 log.debug("Activated user: {}", user);
                 return user;
@@ -123,7 +123,7 @@ public class UserService {
         authorityRepository.findById(AuthoritiesConstants.USER).ifPresent(authorities::add);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
+        searchOutboxService.recordChange(EntityType.USER, newUser.getId());
         this.clearUserCaches(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
@@ -165,7 +165,7 @@ public class UserService {
             user.setAuthorities(authorities);
         }
         userRepository.save(user);
-        userSearchRepository.save(user);
+        searchOutboxService.recordChange(EntityType.USER, user.getId());
         this.clearUserCaches(user);
         log.debug("Created Information for User: {}", user);
         return user;
@@ -189,7 +189,7 @@ public class UserService {
                 user.setEmail(email.toLowerCase());
                 user.setLangKey(langKey);
                 user.setImageUrl(imageUrl);
-                userSearchRepository.save(user);
+                searchOutboxService.recordChange(EntityType.USER, user.getId());
                 this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
             });
@@ -222,7 +222,7 @@ public class UserService {
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .forEach(managedAuthorities::add);
-                userSearchRepository.save(user);
+                searchOutboxService.recordChange(EntityType.USER, user.getId());
                 this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
                 return user;
@@ -233,7 +233,7 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
-            userSearchRepository.delete(user);
+            searchOutboxService.recordChange(EntityType.USER, user.getId());
             this.clearUserCaches(user);
             log.debug("Deleted User: {}", user);
         });
@@ -286,7 +286,7 @@ public class UserService {
             .forEach(user -> {
                 log.debug("Deleting not activated user {}", user.getLogin());
                 userRepository.delete(user);
-                userSearchRepository.delete(user);
+                searchOutboxService.recordChange(EntityType.USER, user.getId());
                 this.clearUserCaches(user);
             });
     }
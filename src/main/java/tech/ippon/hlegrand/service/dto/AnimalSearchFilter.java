@@ -0,0 +1,121 @@
+package tech.ippon.hlegrand.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The structured filters of an animal search, bound from the request parameters of the same names.
+ * <p>
+ * Unlike the query string, the filters are not parsed nor scored by Elasticsearch: they are compiled
+ * to filter clauses, whose matching documents are cached.
+ */
+public class AnimalSearchFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Boolean promoted;
+
+    private String namePrefix;
+
+    private Long minId;
+
+    private Long maxId;
+
+    public Boolean getPromoted() {
+        return promoted;
+    }
+
+    public AnimalSearchFilter promoted(Boolean promoted) {
+        this.promoted = promoted;
+        return this;
+    }
+
+    public void setPromoted(Boolean promoted) {
+        this.promoted = promoted;
+    }
+
+    /**
+     * @return the prefix of one of the words of the name
+     */
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public AnimalSearchFilter namePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+        return this;
+    }
+
+    public void setNamePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * @return the lowest id, inclusive
+     */
+    public Long getMinId() {
+        return minId;
+    }
+
+    public AnimalSearchFilter minId(Long minId) {
+        this.minId = minId;
+        return this;
+    }
+
+    public void setMinId(Long minId) {
+        this.minId = minId;
+    }
+
+    /**
+     * @return the highest id, inclusive
+     */
+    public Long getMaxId() {
+        return maxId;
+    }
+
+    public AnimalSearchFilter maxId(Long maxId) {
+        this.maxId = maxId;
+        return this;
+    }
+
+    public void setMaxId(Long maxId) {
+        this.maxId = maxId;
+    }
+
+    /**
+     * @return true if no filter is set
+     */
+    public boolean isEmpty() {
+        return promoted == null && namePrefix == null && minId == null && maxId == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AnimalSearchFilter that = (AnimalSearchFilter) o;
+        return Objects.equals(promoted, that.promoted) &&
+            Objects.equals(namePrefix, that.namePrefix) &&
+            Objects.equals(minId, that.minId) &&
+            Objects.equals(maxId, that.maxId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(promoted, namePrefix, minId, maxId);
+    }
+
+    @Override
+    public String toString() {
+        return "AnimalSearchFilter{" +
+            "promoted=" + promoted +
+            ", namePrefix='" + namePrefix + "'" +
+            ", minId=" + minId +
+            ", maxId=" + maxId +
+            "}";
+    }
+}
@@ -0,0 +1,99 @@
+package tech.ippon.hlegrand.service.dto;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A page of a listing paginated with cursors instead of page numbers.
+ * <p>
+ * The total number of elements is optional, as computing it is often more expensive than the page itself.
+ *
+ * @param <T> the type of the content
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+
+    private final int size;
+
+    private final String previousCursor;
+
+    private final String nextCursor;
+
+    private final Long totalElements;
+
+    private final boolean totalApproximate;
+
+    /**
+     * Create a page without total.
+     *
+     * @param content        the content of the page
+     * @param size           the requested size of the page
+     * @param previousCursor the cursor of the previous page, or null if this is the first page
+     * @param nextCursor     the cursor of the next page, or null if this is the last page
+     */
+    public CursorPage(List<T> content, int size, String previousCursor, String nextCursor) {
+        this(content, size, previousCursor, nextCursor, null, false);
+    }
+
+    /**
+     * Create a page with a total.
+     *
+     * @param content          the content of the page
+     * @param size             the requested size of the page
+     * @param previousCursor   the cursor of the previous page, or null if this is the first page
+     * @param nextCursor       the cursor of the next page, or null if this is the last page
+     * @param totalElements    the total number of elements
+     * @param totalApproximate true if the total is only a lower bound
+     */
+    public CursorPage(List<T> content, int size, String previousCursor, String nextCursor,
+                      Long totalElements, boolean totalApproximate) {
+        this.content = content;
+        this.size = size;
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+        this.totalElements = totalElements;
+        this.totalApproximate = totalApproximate;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * @return the total number of elements, or null if it was not computed
+     */
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public boolean isTotalApproximate() {
+        return totalApproximate;
+    }
+
+    public <U> CursorPage<U> map(Function<? super T, ? extends U> converter) {
+        List<U> converted = content.stream().map(converter).collect(Collectors.toList());
+        return new CursorPage<>(converted, size, previousCursor, nextCursor, totalElements, totalApproximate);
+    }
+}
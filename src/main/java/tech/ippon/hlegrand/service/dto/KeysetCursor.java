@@ -0,0 +1,92 @@
+package tech.ippon.hlegrand.service.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of a client in a listing sorted by id, sent back and forth as an opaque String.
+ * <p>
+ * It targets the page right after, or right before, the given id.
+ */
+public final class KeysetCursor {
+
+    private static final String AFTER = "a";
+
+    private static final String BEFORE = "b";
+
+    private final long id;
+
+    private final boolean after;
+
+    private KeysetCursor(long id, boolean after) {
+        this.id = id;
+        this.after = after;
+    }
+
+    public static KeysetCursor after(long id) {
+        return new KeysetCursor(id, true);
+    }
+
+    public static KeysetCursor before(long id) {
+        return new KeysetCursor(id, false);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the page follows the id, false if it precedes it
+     */
+    public boolean isAfter() {
+        return after;
+    }
+
+    public String encode() {
+        String value = (after ? AFTER : BEFORE) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a cursor created by {@link #encode()}.
+     *
+     * @param value the encoded cursor
+     * @return the cursor
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static KeysetCursor decode(String value) {
+        String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        if (decoded.startsWith(AFTER)) {
+            return after(Long.parseLong(decoded.substring(AFTER.length())));
+        }
+        if (decoded.startsWith(BEFORE)) {
+            return before(Long.parseLong(decoded.substring(BEFORE.length())));
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        KeysetCursor that = (KeysetCursor) o;
+        return id == that.id && after == that.after;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, after);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+            (after ? "after=" : "before=") + id +
+            "}";
+    }
+}
@@ -0,0 +1,110 @@
+package tech.ippon.hlegrand.service.dto;
+
+import tech.ippon.hlegrand.service.ReindexJob;
+
+import java.time.Instant;
+
+/**
+ * A DTO representing the progress of a reindex job, at the time it was created.
+ */
+public class ReindexJobDTO {
+
+    private String id;
+
+    private ReindexJob.Status status;
+
+    private Instant startDate;
+
+    private Instant endDate;
+
+    private Instant estimatedEndDate;
+
+    private long totalDocuments;
+
+    private long documentsRead;
+
+    private long documentsIndexed;
+
+    private long errors;
+
+    private String errorMessage;
+
+    private double throughput;
+
+    public ReindexJobDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ReindexJobDTO(ReindexJob job) {
+        this.id = job.getId();
+        this.status = job.getStatus();
+        this.startDate = job.getStartDate();
+        this.endDate = job.getEndDate();
+        this.estimatedEndDate = job.getEstimatedEndDate();
+        this.totalDocuments = job.getTotalDocuments();
+        this.documentsRead = job.getDocumentsRead();
+        this.documentsIndexed = job.getDocumentsIndexed();
+        this.errors = job.getErrors();
+        this.errorMessage = job.getErrorMessage();
+        this.throughput = job.getThroughput();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ReindexJob.Status getStatus() {
+        return status;
+    }
+
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+    public Instant getEndDate() {
+        return endDate;
+    }
+
+    public Instant getEstimatedEndDate() {
+        return estimatedEndDate;
+    }
+
+    public long getTotalDocuments() {
+        return totalDocuments;
+    }
+
+    public long getDocumentsRead() {
+        return documentsRead;
+    }
+
+    public long getDocumentsIndexed() {
+        return documentsIndexed;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return the number of documents indexed per second
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexJobDTO{" +
+            "id='" + id + '\'' +
+            ", status=" + status +
+            ", documentsRead=" + documentsRead +
+            ", documentsIndexed=" + documentsIndexed +
+            ", totalDocuments=" + totalDocuments +
+            ", errors=" + errors +
+            "}";
+    }
+}
@@ -0,0 +1,159 @@
+package tech.ippon.hlegrand.service.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of a client in a search listing, sent back and forth as an opaque String.
+ * <p>
+ * It holds the order and the seed of the listing, so that every page is taken from the same
+ * shuffled listing, and the sort values (score, id) of an animal already returned: the page targeted
+ * is right after the last animal of the current page, or right before its first animal.
+ */
+public final class SearchCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private static final String AFTER = "a";
+
+    private static final String BEFORE = "b";
+
+    private final SearchOrder order;
+
+    private final int seed;
+
+    private final Float score;
+
+    private final Long id;
+
+    private final boolean after;
+
+    private SearchCursor(SearchOrder order, int seed, Float score, Long id, boolean after) {
+        this.order = Objects.requireNonNull(order);
+        this.seed = seed;
+        this.score = score;
+        this.id = id;
+        this.after = after;
+    }
+
+    /**
+     * Create a cursor on the first page of a listing.
+     *
+     * @param order the order of the listing
+     * @param seed  the seed of the listing, ignored in relevance order
+     * @return the cursor
+     */
+    public static SearchCursor first(SearchOrder order, int seed) {
+        return new SearchCursor(order, seed, null, null, true);
+    }
+
+    /**
+     * Create a cursor on the page following the given sort values, in the same listing.
+     *
+     * @param score the score of the last animal returned
+     * @param id    the id of the last animal returned
+     * @return the cursor
+     */
+    public SearchCursor after(float score, long id) {
+        return new SearchCursor(order, seed, score, id, true);
+    }
+
+    /**
+     * Create a cursor on the page preceding the given sort values, in the same listing.
+     *
+     * @param score the score of the first animal returned
+     * @param id    the id of the first animal returned
+     * @return the cursor
+     */
+    public SearchCursor before(float score, long id) {
+        return new SearchCursor(order, seed, score, id, false);
+    }
+
+    public SearchOrder getOrder() {
+        return order;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
+
+    public Float getScore() {
+        return score;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    /**
+     * @return true if the page follows the sort values, false if it precedes them
+     */
+    public boolean isAfter() {
+        return after;
+    }
+
+    public String encode() {
+        String value = order.name() + SEPARATOR + seed;
+        if (!isFirst()) {
+            value += SEPARATOR + score + SEPARATOR + id + SEPARATOR + (after ? AFTER : BEFORE);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a cursor created by {@link #encode()}.
+     *
+     * @param value the encoded cursor
+     * @return the cursor
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static SearchCursor decode(String value) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split(SEPARATOR);
+        if (parts.length != 2 && (parts.length != 5 || !AFTER.equals(parts[4]) && !BEFORE.equals(parts[4]))) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+        SearchOrder order = SearchOrder.valueOf(parts[0]);
+        int seed = Integer.parseInt(parts[1]);
+        if (parts.length == 2) {
+            return first(order, seed);
+        }
+        return new SearchCursor(order, seed, Float.parseFloat(parts[2]), Long.parseLong(parts[3]), AFTER.equals(parts[4]));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchCursor that = (SearchCursor) o;
+        return seed == that.seed &&
+            after == that.after &&
+            order == that.order &&
+            Objects.equals(score, that.score) &&
+            Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(order, seed, score, id, after);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCursor{" +
+            "order=" + order +
+            ", seed=" + seed +
+            ", score=" + score +
+            ", id=" + id +
+            ", after=" + after +
+            "}";
+    }
+}
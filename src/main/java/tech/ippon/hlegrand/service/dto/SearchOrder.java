@@ -0,0 +1,42 @@
+package tech.ippon.hlegrand.service.dto;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The orders available for the animal search.
+ */
+public enum SearchOrder {
+
+    RELEVANCE("relevance"),
+    RANDOM("random"),
+    PROMOTED_FIRST("promoted"),
+    SHUFFLED("shuffled"),
+    INTERLEAVED("interleaved");
+
+    private final String parameter;
+
+    SearchOrder(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * @return the value of the "order" request parameter for this order
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * @return true if the order is computed from a seed
+     */
+    public boolean isRandom() {
+        return this == RANDOM || this == PROMOTED_FIRST || this == INTERLEAVED;
+    }
+
+    public static Optional<SearchOrder> fromParameter(String parameter) {
+        return Arrays.stream(values())
+            .filter(order -> order.parameter.equals(parameter))
+            .findFirst();
+    }
+}
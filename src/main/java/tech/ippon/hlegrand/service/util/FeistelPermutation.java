@@ -0,0 +1,81 @@
+package tech.ippon.hlegrand.service.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * A seeded permutation of the integers between 0 (inclusive) and a size (exclusive).
+ * <p>
+ * The integers are shuffled by a balanced Feistel network over the smallest even number of bits covering
+ * the size, and the values out of range are encrypted again until they fall in range ("cycle walking").
+ * The image of any index is computed in constant time, without storing the permutation.
+ */
+public final class FeistelPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+
+    private final int halfBits;
+
+    private final long halfMask;
+
+    private final long[] keys = new long[ROUNDS];
+
+    /**
+     * @param size the number of integers to shuffle, positive
+     * @param seed the seed of the permutation
+     */
+    public FeistelPermutation(long size, long seed) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be positive: " + size);
+        }
+        this.size = size;
+        int bits = Math.max(64 - Long.numberOfLeadingZeros(size - 1), 2);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < ROUNDS; i++) {
+            keys[i] = random.nextLong();
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param index an integer between 0 (inclusive) and the size (exclusive)
+     * @return the image of the index by the permutation, between 0 (inclusive) and the size (exclusive)
+     */
+    public long apply(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (value >= size);
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long key : keys) {
+            long next = left ^ (round(right, key) & halfMask);
+            left = right;
+            right = next;
+        }
+        return left << halfBits | right;
+    }
+
+    /**
+     * The round function, the finalizer of SplitMix64 applied to the half block mixed with the round key.
+     */
+    private static long round(long value, long key) {
+        long z = value ^ key;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,135 @@
+package tech.ippon.hlegrand.service.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import tech.ippon.hlegrand.web.rest.errors.QueryRejectedException;
+
+/**
+ * The pre-flight check of the query strings, before they are sent to Elasticsearch.
+ * <p>
+ * The query string is parsed with the Lucene syntax of the Elasticsearch query_string query, and rejected
+ * when it holds one of the constructs whose cost grows with the size of the index rather than with the
+ * query: leading wildcards, which scan every term of a field, long regular expressions, many fuzzy terms,
+ * and too many clauses. The wildcards, regular expressions and fuzzy terms are only checked, not compiled,
+ * so a pathological query string costs no more to reject than to parse.
+ */
+public final class QueryStringGuard {
+
+    private static final String DEFAULT_FIELD = "_all";
+
+    private static final Analyzer ANALYZER = new WhitespaceAnalyzer();
+
+    private final int maxLength;
+
+    private final int maxClauses;
+
+    private final int maxRegexpLength;
+
+    private final int maxFuzzyTerms;
+
+    /**
+     * @param maxLength       the maximum number of characters of a query string
+     * @param maxClauses      the maximum number of terms, phrases and other leaf clauses
+     * @param maxRegexpLength the maximum number of characters of a regular expression
+     * @param maxFuzzyTerms   the maximum number of fuzzy terms
+     */
+    public QueryStringGuard(int maxLength, int maxClauses, int maxRegexpLength, int maxFuzzyTerms) {
+        this.maxLength = maxLength;
+        this.maxClauses = maxClauses;
+        this.maxRegexpLength = maxRegexpLength;
+        this.maxFuzzyTerms = maxFuzzyTerms;
+    }
+
+    /**
+     * Check that a query string can be sent to Elasticsearch.
+     *
+     * @param query the query string
+     * @throws QueryRejectedException if the query string cannot be parsed or is too expensive
+     */
+    public void check(String query) {
+        if (query.length() > maxLength) {
+            throw new QueryRejectedException("The query is longer than " + maxLength + " characters");
+        }
+        CheckingParser parser = new CheckingParser();
+        Query parsed;
+        try {
+            parsed = parser.parse(query);
+        } catch (ParseException e) {
+            throw new QueryRejectedException("The query cannot be parsed: " + firstLine(e.getMessage()));
+        } catch (BooleanQuery.TooManyClauses e) {
+            throw new QueryRejectedException("The query has more than " + maxClauses + " clauses");
+        }
+        if (parser.fuzzyTerms > maxFuzzyTerms) {
+            throw new QueryRejectedException("The query has more than " + maxFuzzyTerms + " fuzzy terms");
+        }
+        if (countClauses(parsed) > maxClauses) {
+            throw new QueryRejectedException("The query has more than " + maxClauses + " clauses");
+        }
+    }
+
+    private static int countClauses(Query query) {
+        if (query instanceof BooleanQuery) {
+            int count = 0;
+            for (BooleanClause clause : (BooleanQuery) query) {
+                count += countClauses(clause.getQuery());
+            }
+            return count;
+        }
+        if (query instanceof BoostQuery) {
+            return countClauses(((BoostQuery) query).getQuery());
+        }
+        return 1;
+    }
+
+    private static String firstLine(String message) {
+        int end = message.indexOf('\n');
+        return end < 0 ? message : message.substring(0, end);
+    }
+
+    /**
+     * A parser checking the multi-term queries as they are parsed, and replacing them with a term query
+     * instead of building their automaton.
+     */
+    private final class CheckingParser extends QueryParser {
+
+        private int fuzzyTerms;
+
+        private CheckingParser() {
+            super(DEFAULT_FIELD, ANALYZER);
+            // Rejected with a clearer message than the parse error
+            setAllowLeadingWildcard(true);
+        }
+
+        @Override
+        protected Query newWildcardQuery(Term term) {
+            String text = term.text();
+            // A lone star is an exists query for Elasticsearch, which scans no term
+            if (!"*".equals(text) && (text.startsWith("*") || text.startsWith("?"))) {
+                throw new QueryRejectedException("The query has a leading wildcard: " + text);
+            }
+            return new TermQuery(term);
+        }
+
+        @Override
+        protected Query newRegexpQuery(Term regexp) {
+            if (regexp.text().length() > maxRegexpLength) {
+                throw new QueryRejectedException("The query has a regular expression longer than " + maxRegexpLength + " characters");
+            }
+            return new TermQuery(regexp);
+        }
+
+        @Override
+        protected Query newFuzzyQuery(Term term, float minimumSimilarity, int prefixLength) {
+            fuzzyTerms++;
+            return new TermQuery(term);
+        }
+    }
+}
@@ -2,8 +2,11 @@ package tech.ippon.hlegrand.service.util;
 
 import org.apache.commons.lang3.RandomStringUtils;
 
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
- * Utility class for generating random Strings.
+ * Utility class for generating random Strings and seeds.
  */
 public final class RandomUtil {
 
@@ -38,4 +41,56 @@ public final class RandomUtil {
     public static String generateResetKey() {
         return RandomStringUtils.randomNumeric(DEF_COUNT);
     }
+
+    /**
+     * Generate a seed for a random ordering.
+     *
+     * @return the generated seed, always positive
+     */
+    public static int generateSeed() {
+        return ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Derive the seed of the current period from a base seed, so that it changes every period
+     * without being stored anywhere.
+     *
+     * @param seed the base seed
+     * @param now the current instant
+     * @param periodInSeconds the duration of a period
+     * @return the seed of the period including the current instant, always positive
+     */
+    public static int rotateSeed(int seed, Instant now, long periodInSeconds) {
+        long period = now.getEpochSecond() / periodInSeconds;
+        long mixed = ((long) seed << 32 | (period & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 33);
+    }
+
+    /**
+     * Get the generation of the shuffle of the animals at an instant.
+     *
+     * @param now the instant
+     * @param shuffleInSeconds the duration of a shuffle
+     * @return the generation of the shuffle, which changes every shuffle duration
+     */
+    public static long shuffleGeneration(Instant now, long shuffleInSeconds) {
+        return now.getEpochSecond() / shuffleInSeconds;
+    }
+
+    /**
+     * Get the random rank of an animal for a generation of the shuffle.
+     * <p>
+     * The rank only depends on its arguments, so that every node computes the same one without sharing any state.
+     *
+     * @param id the id of the animal
+     * @param generation the generation of the shuffle
+     * @return the random rank, between 0 (inclusive) and 1 (exclusive)
+     */
+    public static float randomRank(long id, long generation) {
+        long z = id * 0x9E3779B97F4A7C15L + generation;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 40) * 0x1.0p-24f;
+    }
 }
@@ -0,0 +1,72 @@
+package tech.ippon.hlegrand.service.util;
+
+/**
+ * The deterministic merge of a promoted listing into an organic one, with a promoted slot every n-th position.
+ * <p>
+ * The positions 0, n, 2n... hold the promoted items, the other positions the organic ones. When one of the
+ * listings runs out, the remaining positions hold the other one. The number of items of each listing before
+ * any position is computed in constant time, so a page is merged from the two ranges it needs, without
+ * reading the previous pages.
+ */
+public final class SlotInterleaving {
+
+    private final int interval;
+
+    private final long promotedCount;
+
+    private final long organicCount;
+
+    /**
+     * @param interval      the distance between two promoted slots, positive
+     * @param promotedCount the number of promoted items
+     * @param organicCount  the number of organic items
+     */
+    public SlotInterleaving(int interval, long promotedCount, long organicCount) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval must be positive: " + interval);
+        }
+        this.interval = interval;
+        this.promotedCount = promotedCount;
+        this.organicCount = organicCount;
+    }
+
+    /**
+     * A merge assuming that both listings are long enough to fill their slots, before knowing their sizes.
+     *
+     * @param interval the distance between two promoted slots, positive
+     * @return the merge of two unbounded listings
+     */
+    public static SlotInterleaving unbounded(int interval) {
+        return new SlotInterleaving(interval, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public long size() {
+        return promotedCount + organicCount;
+    }
+
+    /**
+     * @param position a position in the merged listing
+     * @return the number of promoted items before the position
+     */
+    public long promotedBefore(long position) {
+        long promotedSlots = (position + interval - 1) / interval;
+        // Once the organic items run out, every position is a promoted one
+        return Math.min(promotedCount, Math.max(promotedSlots, position - organicCount));
+    }
+
+    /**
+     * @param position a position in the merged listing
+     * @return the number of organic items before the position
+     */
+    public long organicBefore(long position) {
+        return position - promotedBefore(position);
+    }
+
+    /**
+     * @param position a position in the merged listing
+     * @return true if the position holds a promoted item
+     */
+    public boolean isPromoted(long position) {
+        return promotedBefore(position + 1) > promotedBefore(position);
+    }
+}
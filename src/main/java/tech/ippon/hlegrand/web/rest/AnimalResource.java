@@ -1,7 +1,16 @@
 package tech.ippon.hlegrand.web.rest;
 import org.springframework.security.access.annotation.Secured;
+import tech.ippon.hlegrand.repository.search.SearchPage;
 import tech.ippon.hlegrand.security.AuthoritiesConstants;
 import tech.ippon.hlegrand.service.AnimalService;
+import tech.ippon.hlegrand.service.ReindexService;
+import tech.ippon.hlegrand.service.dto.AnimalSearchFilter;
+import tech.ippon.hlegrand.service.dto.CursorPage;
+import tech.ippon.hlegrand.service.dto.KeysetCursor;
+import tech.ippon.hlegrand.service.dto.ReindexJobDTO;
+import tech.ippon.hlegrand.service.dto.SearchCursor;
+import tech.ippon.hlegrand.service.dto.SearchOrder;
+import tech.ippon.hlegrand.service.util.RandomUtil;
 import tech.ippon.hlegrand.web.rest.errors.BadRequestAlertException;
 import tech.ippon.hlegrand.web.rest.util.HeaderUtil;
 import tech.ippon.hlegrand.web.rest.util.PaginationUtil;
@@ -15,6 +24,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.validation.Valid;
 import java.net.URI;
@@ -37,10 +47,20 @@ public class AnimalResource {
 
     private static final String ENTITY_NAME = "animal";
 
+    private static final String SEED_HEADER = "X-Random-Seed";
+
+    /**
+     * The only order of the listing read from the database besides its sort parameter, the search orders do not apply.
+     */
+    private static final String RANDOM_LISTING_ORDER = "random";
+
     private final AnimalService animalService;
 
-    public AnimalResource(AnimalService animalService) {
+    private final ReindexService reindexService;
+
+    public AnimalResource(AnimalService animalService, ReindexService reindexService) {
         this.animalService = animalService;
+        this.reindexService = reindexService;
     }
 
     /**
@@ -85,18 +105,74 @@ public class AnimalResource {
 
     /**
      * GET  /animals : get all the animals.
+     * <p>
+     * With a cursor parameter (empty for the first page), the animals are sorted by id and paginated
+     * with cursors, without computing the total: the previous and next cursors are in the Link header.
+     * <p>
+     * With order=random, the animals are shuffled using the seed parameter, or the shuffle seed of the user
+     * when it is missing. The seed is returned in the X-Random-Seed header and in the pagination links.
      *
+     * @param order the order of the animals, "random" or by the sort parameter (the default)
+     * @param seed the seed of the random order
+     * @param cursor the cursor of the page, from the Link header of another page
      * @param pageable the pagination information
      * @return the ResponseEntity with status 200 (OK) and the list of animals in body
      */
     @GetMapping("/animals")
-    public ResponseEntity<List<AnimalDTO>> getAllAnimals(Pageable pageable) {
+    public ResponseEntity<List<AnimalDTO>> getAllAnimals(@RequestParam(required = false) String order,
+                                                         @RequestParam(required = false) Integer seed,
+                                                         @RequestParam(required = false) String cursor, Pageable pageable) {
         log.debug("REST request to get a page of Animals");
+        if (isRandomListing(order)) {
+            int randomSeed = seed != null ? seed : animalService.getShuffleSeed();
+            Page<AnimalDTO> page = animalService.findAllRandom(randomSeed, pageable);
+            String baseUrl = UriComponentsBuilder.fromUriString("/api/animals")
+                .queryParam("order", order)
+                .queryParam("seed", randomSeed)
+                .toUriString();
+            HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, baseUrl);
+            headers.add(SEED_HEADER, Integer.toString(randomSeed));
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        }
+        if (cursor != null) {
+            CursorPage<AnimalDTO> page = animalService.findAll(cursor.isEmpty() ? null : decodeKeysetCursor(cursor), pageable.getPageSize());
+            HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page, "/api/animals");
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        }
         Page<AnimalDTO> page = animalService.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/animals");
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * GET  /animals/random?n=:n : get a random sample of n animals.
+     * <p>
+     * The sample is drawn by Elasticsearch with the seed parameter, or with a new seed on each request
+     * when it is missing. The seed is returned in the X-Random-Seed header. The sample size is capped
+     * by the application.search.max-sample-size property.
+     *
+     * @param n the number of animals to return
+     * @param query the query the animals must match
+     * @param promoted the promoted flag the animals must have
+     * @param seed the seed of the sample
+     * @return the ResponseEntity with status 200 (OK) and the list of animals in body,
+     * or with status 400 (Bad Request) if n is not positive
+     */
+    @GetMapping("/animals/random")
+    public ResponseEntity<List<AnimalDTO>> getRandomAnimals(@RequestParam int n, @RequestParam(required = false) String query,
+                                                            @RequestParam(required = false) Boolean promoted,
+                                                            @RequestParam(required = false) Integer seed) {
+        log.debug("REST request to get a sample of {} Animals", n);
+        if (n < 1) {
+            throw new BadRequestAlertException("Invalid sample size", ENTITY_NAME, "samplesizeinvalid");
+        }
+        int randomSeed = seed != null ? seed : RandomUtil.generateSeed();
+        List<AnimalDTO> animals = animalService.sample(query, promoted, randomSeed, n);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(SEED_HEADER, Integer.toString(randomSeed));
+        return ResponseEntity.ok().headers(headers).body(animals);
+    }
+
     /**
      * GET  /animals/:id : get the "id" animal.
      *
@@ -126,24 +202,170 @@ public class AnimalResource {
     /**
      * SEARCH  /_search/animals?query=:query : search for the animal corresponding
      * to the query.
+     * <p>
+     * With order=random, the results are shuffled by Elasticsearch using the seed parameter,
+     * or the shuffle seed of the user when it is missing. The seed is returned in the X-Random-Seed header
+     * and in the pagination links, so that the next pages keep the same order.
+     * With order=promoted, the promoted animals are shuffled first, then the other ones.
+     * With order=shuffled, the results are in the order of the last shuffle of all the animals, the same for every user.
+     * With order=interleaved, the results are shuffled with the promoted animals at fixed slots, every n-th position.
+     * <p>
+     * With a cursor parameter (empty for the first page), the page is fetched after the cursor instead
+     * of using the page number, and the cursors of the previous and next pages are returned in the "prev"
+     * and "next" links.
+     * The cursor holds the order and the seed of the listing. The interleaved order has no cursors.
+     * <p>
+     * The promoted, namePrefix, minId and maxId parameters filter the animals without being scored,
+     * and can replace the query.
+     * <p>
+     * A query with a leading wildcard, a long regular expression, too many fuzzy terms or too many clauses
+     * is rejected with status 400 (Bad Request). A relevance search timing out fails with status
+     * 503 (Service Unavailable), and its total is sent with X-Total-Count-Relation "gte" when the shards stopped
+     * collecting early.
      *
-     * @param query the query of the animal search
+     * @param query the query of the animal search, all the animals match when it is missing
+     * @param filter the filters of the animal search
+     * @param order the order of the results, "random", "promoted", "interleaved", "shuffled" or "relevance" (the default)
+     * @param seed the seed of the random order
+     * @param cursor the cursor returned with the previous page
      * @param pageable the pagination information
      * @return the result of the search
      */
     @GetMapping("/_search/animals")
-    public ResponseEntity<List<AnimalDTO>> searchAnimals(@RequestParam String query, Pageable pageable) {
-        log.debug("REST request to search for a page of Animals for query {}", query);
-        Page<AnimalDTO> page = animalService.search(query, pageable);
-        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/animals");
+    public ResponseEntity<List<AnimalDTO>> searchAnimals(@RequestParam(required = false) String query,
+                                                         AnimalSearchFilter filter, @RequestParam(required = false) String order,
+                                                         @RequestParam(required = false) Integer seed,
+                                                         @RequestParam(required = false) String cursor, Pageable pageable) {
+        log.debug("REST request to search for a page of Animals for query {} and {}", query, filter);
+        if (cursor != null) {
+            return searchAnimalsAfter(query, filter, cursor.isEmpty() ? firstCursor(order, seed) : decodeCursor(cursor), pageable);
+        }
+        SearchOrder searchOrder = parseOrder(order);
+        if (searchOrder == SearchOrder.SHUFFLED) {
+            Page<AnimalDTO> page = animalService.searchShuffled(query, filter, pageable);
+            String baseUrl = searchUrl(UriComponentsBuilder.fromUriString("/api/_search/animals")
+                .queryParam("order", order), filter);
+            HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, baseUrl);
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        }
+        if (!searchOrder.isRandom()) {
+            SearchPage<AnimalDTO> page = animalService.search(query, filter, pageable);
+            String baseUrl = searchUrl(UriComponentsBuilder.fromUriString("/api/_search/animals"), filter);
+            HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page,
+                page.isTotalHitsApproximate(), baseUrl);
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        }
+        int randomSeed = seed != null ? seed : animalService.getShuffleSeed();
+        Page<AnimalDTO> page;
+        if (searchOrder == SearchOrder.PROMOTED_FIRST) {
+            page = animalService.searchPromotedFirst(query, filter, randomSeed, pageable);
+        } else if (searchOrder == SearchOrder.INTERLEAVED) {
+            page = animalService.searchInterleaved(query, filter, randomSeed, pageable);
+        } else {
+            page = animalService.searchRandom(query, filter, randomSeed, pageable);
+        }
+        String baseUrl = searchUrl(UriComponentsBuilder.fromUriString("/api/_search/animals")
+            .queryParam("order", order)
+            .queryParam("seed", randomSeed), filter);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, baseUrl);
+        headers.add(SEED_HEADER, Integer.toString(randomSeed));
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    private ResponseEntity<List<AnimalDTO>> searchAnimalsAfter(String query, AnimalSearchFilter filter, SearchCursor searchCursor,
+                                                               Pageable pageable) {
+        if (searchCursor.getOrder() == SearchOrder.INTERLEAVED) {
+            // A cursor is a position in a single listing, the interleaved pages are merged from two of them
+            throw new BadRequestAlertException("Invalid order for a cursor", ENTITY_NAME, "orderinvalid");
+        }
+        CursorPage<AnimalDTO> page = animalService.searchAfter(query, filter, searchCursor, pageable.getPageSize());
+        UriComponentsBuilder baseUrl = UriComponentsBuilder.fromUriString("/api/_search/animals")
+            .queryParam("order", searchCursor.getOrder().getParameter());
+        if (searchCursor.getOrder().isRandom()) {
+            baseUrl.queryParam("seed", searchCursor.getSeed());
+        }
+        HttpHeaders headers = PaginationUtil.generateSearchCursorPaginationHttpHeaders(query, page, searchUrl(baseUrl, filter));
+        if (searchCursor.getOrder().isRandom()) {
+            headers.add(SEED_HEADER, Integer.toString(searchCursor.getSeed()));
+        }
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * The URL of the search pages, with the filters so that the other pages are filtered the same way.
+     * The filter values are encoded here, the pagination links are added to this URL as it is.
+     */
+    private String searchUrl(UriComponentsBuilder baseUrl, AnimalSearchFilter filter) {
+        if (filter.getPromoted() != null) {
+            baseUrl.queryParam("promoted", filter.getPromoted());
+        }
+        if (filter.getNamePrefix() != null) {
+            baseUrl.queryParam("namePrefix", filter.getNamePrefix());
+        }
+        if (filter.getMinId() != null) {
+            baseUrl.queryParam("minId", filter.getMinId());
+        }
+        if (filter.getMaxId() != null) {
+            baseUrl.queryParam("maxId", filter.getMaxId());
+        }
+        return baseUrl.toUriString();
+    }
+
+    private boolean isRandomListing(String order) {
+        if (order == null) {
+            return false;
+        }
+        if (!RANDOM_LISTING_ORDER.equals(order)) {
+            throw new BadRequestAlertException("Invalid order", ENTITY_NAME, "orderinvalid");
+        }
+        return true;
+    }
+
+    private SearchOrder parseOrder(String order) {
+        if (order == null) {
+            return SearchOrder.RELEVANCE;
+        }
+        return SearchOrder.fromParameter(order)
+            .orElseThrow(() -> new BadRequestAlertException("Invalid order", ENTITY_NAME, "orderinvalid"));
+    }
+
+    private SearchCursor firstCursor(String order, Integer seed) {
+        return SearchCursor.first(parseOrder(order), seed != null ? seed : animalService.getShuffleSeed());
+    }
+
+    private KeysetCursor decodeKeysetCursor(String cursor) {
+        try {
+            return KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+        }
+    }
+
+    private SearchCursor decodeCursor(String cursor) {
+        try {
+            return SearchCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+        }
+    }
+
+    /**
+     * POST  /_search/animals : start a reindex of all the animals in Elasticsearch.
+     * <p>
+     * The jobs are only known by the instance running them: behind a load balancer, the location must be
+     * polled on the same instance, or it is not found.
+     *
+     * @return the ResponseEntity with status 202 (Accepted) and with body the reindex job, whose progress
+     * is available at the location given in the header
+     * @throws URISyntaxException if the Location URI syntax is incorrect
+     */
     @PostMapping("/_search/animals")
     @Secured(AuthoritiesConstants.ADMIN)
-    public ResponseEntity<Void> reindexAnimals() {
+    public ResponseEntity<ReindexJobDTO> reindexAnimals() throws URISyntaxException {
         log.debug("REST request to reindex all Animal in Elasticsearch");
-        animalService.reindexAll();
-        return ResponseEntity.ok().build();
+        ReindexJobDTO job = reindexService.start();
+        return ResponseEntity.accepted()
+            .location(new URI("/management/reindex-jobs/" + job.getId()))
+            .body(job);
     }
 }
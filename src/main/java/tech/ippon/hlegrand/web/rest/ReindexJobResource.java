@@ -0,0 +1,45 @@
+package tech.ippon.hlegrand.web.rest;
+
+import io.github.jhipster.web.util.ResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import tech.ippon.hlegrand.service.ReindexService;
+import tech.ippon.hlegrand.service.dto.ReindexJobDTO;
+
+import java.util.List;
+
+/**
+ * Controller to follow the progress of the Elasticsearch reindex jobs.
+ * <p>
+ * The jobs are kept in memory by the instance running them, so each instance only lists its own jobs:
+ * with several instances, a job is not found on the other ones.
+ */
+@RestController
+@RequestMapping("/management")
+public class ReindexJobResource {
+
+    private final Logger log = LoggerFactory.getLogger(ReindexJobResource.class);
+
+    private final ReindexService reindexService;
+
+    public ReindexJobResource(ReindexService reindexService) {
+        this.reindexService = reindexService;
+    }
+
+    @GetMapping("/reindex-jobs")
+    public List<ReindexJobDTO> getAllReindexJobs() {
+        log.debug("REST request to get all reindex jobs");
+        return reindexService.findAll();
+    }
+
+    @GetMapping("/reindex-jobs/{id}")
+    public ResponseEntity<ReindexJobDTO> getReindexJob(@PathVariable String id) {
+        log.debug("REST request to get reindex job : {}", id);
+        return ResponseUtil.wrapOrNotFound(reindexService.findOne(id));
+    }
+}
@@ -1,5 +1,6 @@
 package tech.ippon.hlegrand.web.rest.errors;
 
+import tech.ippon.hlegrand.repository.search.SearchTimeoutException;
 import tech.ippon.hlegrand.web.rest.util.HeaderUtil;
 
 import org.springframework.dao.ConcurrencyFailureException;
@@ -109,4 +110,13 @@ public class ExceptionTranslator implements ProblemHandling {
             .build();
         return create(ex, problem, request);
     }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleSearchTimeout(SearchTimeoutException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.SERVICE_UNAVAILABLE)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_SEARCH_TIMEOUT)
+            .build();
+        return create(ex, problem, request);
+    }
 }
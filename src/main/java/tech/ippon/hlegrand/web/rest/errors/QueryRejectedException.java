@@ -0,0 +1,13 @@
+package tech.ippon.hlegrand.web.rest.errors;
+
+/**
+ * Thrown when a search query string cannot be parsed, or is too expensive to be sent to Elasticsearch.
+ */
+public class QueryRejectedException extends BadRequestAlertException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueryRejectedException(String reason) {
+        super(ErrorConstants.QUERY_REJECTED_TYPE, reason, "animal", "queryrejected");
+    }
+}
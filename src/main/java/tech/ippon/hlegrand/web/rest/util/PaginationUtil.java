@@ -1,6 +1,7 @@
 package tech.ippon.hlegrand.web.rest.util;
 
 import org.springframework.data.domain.Page;
+import tech.ippon.hlegrand.service.dto.CursorPage;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -16,13 +17,17 @@ import java.net.URLEncoder;
  */
 public final class PaginationUtil {
 
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private static final String TOTAL_COUNT_RELATION_HEADER = "X-Total-Count-Relation";
+
     private PaginationUtil() {
     }
 
     public static <T> HttpHeaders generatePaginationHttpHeaders(Page<T> page, String baseUrl) {
 
         HttpHeaders headers = new HttpHeaders();
-        headers.add("X-Total-Count", Long.toString(page.getTotalElements()));
+        headers.add(TOTAL_COUNT_HEADER, Long.toString(page.getTotalElements()));
         String link = "";
         if ((page.getNumber() + 1) < page.getTotalPages()) {
             link = "<" + generateUri(baseUrl, page.getNumber() + 1, page.getSize()) + ">; rel=\"next\",";
@@ -42,35 +47,111 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * The base URL is already encoded, it is not encoded again.
+     */
     private static String generateUri(String baseUrl, int page, int size) {
-        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).toUriString();
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).build(true).toUriString();
     }
 
     public static <T> HttpHeaders generateSearchPaginationHttpHeaders(String query, Page<T> page, String baseUrl) {
-        String escapedQuery;
-        try {
-            escapedQuery = URLEncoder.encode(query, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+        return generateSearchPaginationHttpHeaders(query, page, false, baseUrl);
+    }
+
+    /**
+     * Generate the headers of a page of search results, with X-Total-Count-Relation set to "gte" when the total
+     * is a lower bound.
+     *
+     * @param query            the query of the search
+     * @param page             the page
+     * @param totalApproximate true if the total is only a lower bound
+     * @param baseUrl          the URL of the search, without the page, size and query parameters
+     * @param <T>              the type of the content
+     * @return the headers
+     */
+    public static <T> HttpHeaders generateSearchPaginationHttpHeaders(String query, Page<T> page, boolean totalApproximate,
+                                                                      String baseUrl) {
+        String querySuffix = querySuffix(query);
         HttpHeaders headers = new HttpHeaders();
-        headers.add("X-Total-Count", Long.toString(page.getTotalElements()));
+        headers.add(TOTAL_COUNT_HEADER, Long.toString(page.getTotalElements()));
+        if (totalApproximate) {
+            headers.add(TOTAL_COUNT_RELATION_HEADER, "gte");
+        }
         String link = "";
         if ((page.getNumber() + 1) < page.getTotalPages()) {
-            link = "<" + generateUri(baseUrl, page.getNumber() + 1, page.getSize()) + "&query=" + escapedQuery + ">; rel=\"next\",";
+            link = "<" + generateUri(baseUrl, page.getNumber() + 1, page.getSize()) + querySuffix + ">; rel=\"next\",";
         }
         // prev link
         if ((page.getNumber()) > 0) {
-            link += "<" + generateUri(baseUrl, page.getNumber() - 1, page.getSize()) + "&query=" + escapedQuery + ">; rel=\"prev\",";
+            link += "<" + generateUri(baseUrl, page.getNumber() - 1, page.getSize()) + querySuffix + ">; rel=\"prev\",";
         }
         // last and first link
         int lastPage = 0;
         if (page.getTotalPages() > 0) {
             lastPage = page.getTotalPages() - 1;
         }
-        link += "<" + generateUri(baseUrl, lastPage, page.getSize()) + "&query=" + escapedQuery + ">; rel=\"last\",";
-        link += "<" + generateUri(baseUrl, 0, page.getSize()) + "&query=" + escapedQuery + ">; rel=\"first\"";
+        link += "<" + generateUri(baseUrl, lastPage, page.getSize()) + querySuffix + ">; rel=\"last\",";
+        link += "<" + generateUri(baseUrl, 0, page.getSize()) + querySuffix + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    /**
+     * Generate the headers of a page paginated with cursors.
+     * <p>
+     * The links carry the cursors instead of page numbers, and there is no "last" link. The X-Total-Count header
+     * is only sent when the total was computed, along with X-Total-Count-Relation set to "gte" when it is a lower bound.
+     *
+     * @param page    the page
+     * @param baseUrl the URL of the listing, the first link is this URL with an empty cursor
+     * @param <T>     the type of the content
+     * @return the headers
+     */
+    public static <T> HttpHeaders generateCursorPaginationHttpHeaders(CursorPage<T> page, String baseUrl) {
+        return generateCursorPaginationHttpHeaders(page, baseUrl, "");
+    }
+
+    public static <T> HttpHeaders generateSearchCursorPaginationHttpHeaders(String query, CursorPage<T> page, String baseUrl) {
+        return generateCursorPaginationHttpHeaders(page, baseUrl, querySuffix(query));
+    }
+
+    /**
+     * The query parameter of the search links, none for the searches only filtered by other parameters.
+     */
+    private static String querySuffix(String query) {
+        if (query == null) {
+            return "";
+        }
+        try {
+            return "&query=" + URLEncoder.encode(query, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> HttpHeaders generateCursorPaginationHttpHeaders(CursorPage<T> page, String baseUrl, String suffix) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getTotalElements() != null) {
+            headers.add(TOTAL_COUNT_HEADER, Long.toString(page.getTotalElements()));
+            if (page.isTotalApproximate()) {
+                headers.add(TOTAL_COUNT_RELATION_HEADER, "gte");
+            }
+        }
+        String link = "";
+        if (page.hasNext()) {
+            link = "<" + generateCursorUri(baseUrl, page.getNextCursor(), page.getSize()) + suffix + ">; rel=\"next\",";
+        }
+        // prev link
+        if (page.hasPrevious()) {
+            link += "<" + generateCursorUri(baseUrl, page.getPreviousCursor(), page.getSize()) + suffix + ">; rel=\"prev\",";
+        }
+        // first link, there is no last link as it would need the total
+        link += "<" + generateCursorUri(baseUrl, "", page.getSize()) + suffix + ">; rel=\"first\"";
         headers.add(HttpHeaders.LINK, link);
         return headers;
     }
+
+    private static String generateCursorUri(String baseUrl, String cursor, int size) {
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("cursor", cursor).queryParam("size", size).build(true).toUriString();
+    }
 }
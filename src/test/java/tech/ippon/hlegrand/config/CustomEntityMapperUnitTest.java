@@ -0,0 +1,74 @@
+package tech.ippon.hlegrand.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+import tech.ippon.hlegrand.config.ElasticsearchConfiguration.CustomEntityMapper;
+import tech.ippon.hlegrand.domain.Animal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the CustomEntityMapper.
+ *
+ * @see CustomEntityMapper
+ */
+public class CustomEntityMapperUnitTest {
+
+    private ObjectMapper applicationObjectMapper;
+
+    private CustomEntityMapper entityMapper;
+
+    private Animal animal;
+
+    @Before
+    public void setup() {
+        applicationObjectMapper = new ObjectMapper();
+        entityMapper = new CustomEntityMapper(applicationObjectMapper);
+        animal = new Animal().name("mapped").promoted(true);
+        animal.setId(42L);
+    }
+
+    @Test
+    public void testTheApplicationObjectMapperIsNotReconfigured() throws IOException {
+        assertThat(applicationObjectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)).isTrue();
+
+        Animal mapped = entityMapper.mapToObject("{\"id\":42,\"name\":\"mapped\",\"randomRank\":0.5}", Animal.class);
+
+        assertThat(mapped.getName()).isEqualTo("mapped");
+    }
+
+    @Test
+    public void testStringRoundTrip() throws IOException {
+        String source = entityMapper.mapToString(animal);
+
+        assertThat(entityMapper.mapToObject(source, Animal.class).getName()).isEqualTo("mapped");
+    }
+
+    @Test
+    public void testSourceOfAHitMappedFromTheTree() throws IOException {
+        JsonNode response = entityMapper.readTree(new ByteArrayInputStream(
+            "{\"hits\":{\"hits\":[{\"_id\":\"42\",\"_source\":{\"id\":42,\"name\":\"mapped\",\"randomRank\":0.5}}]}}"
+                .getBytes(StandardCharsets.UTF_8)));
+
+        Animal mapped = entityMapper.treeToValue(response.path("hits").path("hits").get(0).get("_source"), Animal.class);
+
+        assertThat(mapped.getId()).isEqualTo(42L);
+        assertThat(mapped.getName()).isEqualTo("mapped");
+    }
+
+    @Test
+    public void testTreeWithExtraField() throws IOException {
+        ObjectNode tree = entityMapper.mapToTree(animal);
+        tree.put("randomRank", 0.5f);
+
+        assertThat(entityMapper.mapToString(tree)).contains("\"name\":\"mapped\"", "\"randomRank\":0.5");
+    }
+}
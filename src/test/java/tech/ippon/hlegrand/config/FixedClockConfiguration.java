@@ -0,0 +1,23 @@
+package tech.ippon.hlegrand.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * Configure a fixed clock, so that the values the tests compute from the current time
+ * are the same as the ones of the services.
+ */
+@Configuration
+public class FixedClockConfiguration {
+
+    @Bean
+    @Primary
+    public Clock fixedClock() {
+        return Clock.fixed(Instant.parse("2026-10-18T12:00:00Z"), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,129 @@
+package tech.ippon.hlegrand.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Get;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the RestClientJestClient, against a local HTTP server answering like Elasticsearch.
+ *
+ * @see RestClientJestClient
+ */
+public class RestClientJestClientUnitTest {
+
+    private static final String SEARCH_RESPONSE = "{\"took\":1,\"hits\":{\"total\":3,\"hits\":[]}}";
+
+    private HttpServer server;
+
+    private String lastRequest;
+
+    private RestClientJestClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            InputStream body = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = new GZIPInputStream(body);
+            }
+            lastRequest = exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + read(body);
+            int status = exchange.getRequestURI().getPath().startsWith("/missing") ? 404 : 200;
+            byte[] response = SEARCH_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+                response = gzip(response);
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        client = new RestClientJestClient(RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build(), true);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCompressedSearch() throws IOException {
+        SearchResult result = client.execute(new Search.Builder("{\"query\":{\"match_all\":{}}}")
+            .addIndex("animal")
+            .addType("animal")
+            .build());
+
+        assertThat(lastRequest).isEqualTo("POST /animal/animal/_search {\"query\":{\"match_all\":{}}}");
+        assertThat(result.isSucceeded()).isTrue();
+        assertThat(result.getTotal()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testCompressedSearchReadFromTheStream() throws IOException {
+        JsonNode response = client.execute(new Search.Builder("{\"query\":{\"match_all\":{}}}")
+            .addIndex("animal")
+            .addType("animal")
+            .build(), new ObjectMapper()::readTree);
+
+        assertThat(lastRequest).isEqualTo("POST /animal/animal/_search {\"query\":{\"match_all\":{}}}");
+        assertThat(response.path("hits").path("total").asLong()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testHttpErrorIsThrownWhenReadFromTheStream() {
+        assertThatThrownBy(() -> client.execute(new Get.Builder("missing", "1").build(), new ObjectMapper()::readTree))
+            .isInstanceOf(ResponseException.class);
+    }
+
+    @Test
+    public void testHttpErrorIsInTheResult() throws IOException {
+        JestResult result = client.execute(new Get.Builder("missing", "1").build());
+
+        assertThat(result.isSucceeded()).isFalse();
+        assertThat(result.getResponseCode()).isEqualTo(404);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -40,6 +40,17 @@ public class TokenProviderTest {
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
     }
 
+    @Test
+    public void testShuffleSeedIsCarriedByTheToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication authentication = tokenProvider.getAuthentication(token);
+
+        assertThat(authentication.getDetails()).isInstanceOf(JWTAuthenticationDetails.class);
+        assertThat(((JWTAuthenticationDetails) authentication.getDetails()).getShuffleSeed()).isNotNull();
+        assertThat(tokenProvider.getAuthentication(token).getDetails()).isEqualTo(authentication.getDetails());
+    }
+
     @Test
     public void testReturnFalseWhenJWThasInvalidSignature() {
         boolean isTokenValid = tokenProvider.validateToken(createTokenWithDifferentSignature());
@@ -0,0 +1,124 @@
+package tech.ippon.hlegrand.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import tech.ippon.hlegrand.service.dto.AnimalDTO;
+import tech.ippon.hlegrand.service.dto.AnimalSearchFilter;
+import tech.ippon.hlegrand.service.dto.SearchOrder;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the AnimalSearchCacheService.
+ *
+ * @see AnimalSearchCacheService
+ */
+public class AnimalSearchCacheServiceUnitTest {
+
+    private static final AnimalSearchFilter NO_FILTER = new AnimalSearchFilter();
+
+    private AnimalSearchCacheService animalSearchCacheService;
+
+    private AtomicInteger searches;
+
+    @Before
+    public void setup() {
+        animalSearchCacheService = new AnimalSearchCacheService(new ConcurrentMapCacheManager());
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    public void testIdenticalConcurrentSearchesAreCoalesced() throws Exception {
+        CountDownLatch searchStarted = new CountDownLatch(1);
+        CountDownLatch searchReleased = new CountDownLatch(1);
+        Page<AnimalDTO> page = new PageImpl<>(Collections.singletonList(new AnimalDTO()));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Page<AnimalDTO>> first = executor.submit(() ->
+                animalSearchCacheService.get(SearchOrder.RELEVANCE, "name:a", NO_FILTER, null, PageRequest.of(0, 20), () -> {
+                    searches.incrementAndGet();
+                    searchStarted.countDown();
+                    await(searchReleased);
+                    return page;
+                }));
+            assertThat(searchStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<Page<AnimalDTO>> second = executor.submit(() ->
+                animalSearchCacheService.get(SearchOrder.RELEVANCE, "name:a", NO_FILTER, null, PageRequest.of(0, 20), () -> {
+                    searches.incrementAndGet();
+                    return page;
+                }));
+            // Let the second search reach the search in flight
+            Thread.sleep(100);
+            searchReleased.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS)).isSameAs(page);
+            assertThat(second.get(10, TimeUnit.SECONDS)).isSameAs(page);
+            assertThat(searches.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedSearchIsNotCached() {
+        assertThatThrownBy(() -> animalSearchCacheService.get(SearchOrder.RELEVANCE, "name:a", NO_FILTER, null, PageRequest.of(0, 20), () -> {
+            throw new IllegalStateException("Elasticsearch is down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        Page<AnimalDTO> page = animalSearchCacheService.get(SearchOrder.RELEVANCE, "name:a", NO_FILTER, null, PageRequest.of(0, 20), () -> {
+            searches.incrementAndGet();
+            return new PageImpl<>(Collections.emptyList());
+        });
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(searches.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidateStopsServingTheCachedPages() {
+        animalSearchCacheService.get(SearchOrder.RELEVANCE, "name:a", NO_FILTER, null, PageRequest.of(0, 20), () -> {
+            searches.incrementAndGet();
+            return new PageImpl<>(Collections.emptyList());
+        });
+        animalSearchCacheService.invalidate();
+        animalSearchCacheService.get(SearchOrder.RELEVANCE, "name:a", NO_FILTER, null, PageRequest.of(0, 20), () -> {
+            searches.incrementAndGet();
+            return new PageImpl<>(Collections.emptyList());
+        });
+
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testShuffledPagesAreCachedPerShuffleGeneration() {
+        for (long shuffleGeneration : new long[]{1L, 1L, 2L}) {
+            animalSearchCacheService.get(SearchOrder.SHUFFLED, null, NO_FILTER, shuffleGeneration, PageRequest.of(0, 20), () -> {
+                searches.incrementAndGet();
+                return new PageImpl<>(Collections.emptyList());
+            });
+        }
+
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
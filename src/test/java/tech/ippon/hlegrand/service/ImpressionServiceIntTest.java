@@ -0,0 +1,196 @@
+package tech.ippon.hlegrand.service;
+
+import tech.ippon.hlegrand.RandomizePaginateElasticsearchApp;
+import tech.ippon.hlegrand.config.ApplicationProperties;
+import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.AnimalImpression;
+import tech.ippon.hlegrand.repository.AnimalImpressionRepository;
+import tech.ippon.hlegrand.repository.AnimalRepository;
+import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+import tech.ippon.hlegrand.service.dto.AnimalDTO;
+import tech.ippon.hlegrand.service.util.RandomUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test class for the ImpressionService.
+ *
+ * @see ImpressionService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RandomizePaginateElasticsearchApp.class)
+public class ImpressionServiceIntTest {
+
+    private static final Long PROMOTED_ID = 900001L;
+
+    private static final Long OTHER_ID = 900002L;
+
+    private static final int PAGE_SIZE = 3;
+
+    @Autowired
+    private ImpressionService impressionService;
+
+    @Autowired
+    private RandomRankService randomRankService;
+
+    @Autowired
+    private AnimalImpressionRepository animalImpressionRepository;
+
+    @Autowired
+    private AnimalRepository animalRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    /**
+     * This repository is mocked in the tech.ippon.hlegrand.repository.search test package.
+     *
+     * @see tech.ippon.hlegrand.repository.search.AnimalSearchRepositoryMockConfiguration
+     */
+    @Autowired
+    private AnimalSearchRepository mockAnimalSearchRepository;
+
+    @Test
+    @Transactional
+    public void assertThatThePromotedImpressionsAreFlushedInBatches() {
+        AnimalDTO promoted = animal(PROMOTED_ID, true);
+        AnimalDTO other = animal(OTHER_ID, false);
+
+        impressionService.served(Arrays.asList(promoted, other));
+        impressionService.served(Collections.singletonList(promoted));
+        assertThat(impressionService.flush()).isGreaterThanOrEqualTo(1);
+
+        assertThat(animalImpressionRepository.findById(PROMOTED_ID)).hasValueSatisfying(impression ->
+            assertThat(impression.getImpressions()).isEqualTo(2L));
+        assertThat(animalImpressionRepository.findById(OTHER_ID)).isEmpty();
+
+        // The next flush adds the new impressions to the count in the database
+        impressionService.served(Collections.singletonList(promoted));
+        assertThat(impressionService.flush()).isEqualTo(1);
+
+        assertThat(animalImpressionRepository.findById(PROMOTED_ID)).hasValueSatisfying(impression -> {
+            assertThat(impression.getImpressions()).isEqualTo(3L);
+            assertThat(impression.getShuffledImpressions()).isEqualTo(0L);
+        });
+
+        // Nothing is written without new impressions
+        assertThat(impressionService.flush()).isEqualTo(0);
+
+        // The searches score with the impressions of the last shuffle, so the flushes leave the index as is
+        verifyZeroInteractions(mockAnimalSearchRepository);
+    }
+
+    @Test
+    @Transactional
+    public void assertThatTheImpressionsAreAddedToTheCountOfAnotherNode() {
+        // Another node inserted the count of the animal since the last flush of this one
+        animalImpressionRepository.saveAndFlush(new AnimalImpression(PROMOTED_ID, 5L));
+
+        impressionService.served(Collections.singletonList(animal(PROMOTED_ID, true)));
+        impressionService.flush();
+
+        assertThat(animalImpressionRepository.findById(PROMOTED_ID)).hasValueSatisfying(impression ->
+            assertThat(impression.getImpressions()).isEqualTo(6L));
+    }
+
+    @Test
+    @Transactional
+    public void assertThatTheIdleCountersAreRemovedWithoutLosingImpressions() {
+        AnimalDTO promoted = animal(PROMOTED_ID, true);
+        impressionService.served(Collections.singletonList(promoted));
+        impressionService.flush();
+        // The counter is idle, it is retired then removed
+        assertThat(impressionService.flush()).isEqualTo(0);
+        assertThat(impressionService.flush()).isEqualTo(0);
+
+        impressionService.served(Collections.singletonList(promoted));
+        assertThat(impressionService.flush()).isEqualTo(1);
+
+        assertThat(animalImpressionRepository.findById(PROMOTED_ID)).hasValueSatisfying(impression ->
+            assertThat(impression.getImpressions()).isEqualTo(2L));
+    }
+
+    @Test
+    @Transactional
+    public void assertThatPagingAcrossAFlushHasNoDuplicatesNorGaps() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3 * PAGE_SIZE; i++) {
+            ids.add(animalRepository.saveAndFlush(new Animal().name("promoted" + i).promoted(true)).getId());
+        }
+        // The index holds the impressions written with the random ranks
+        Map<Long, Long> indexedImpressions = new HashMap<>();
+        doAnswer(invocation -> {
+            Map<Long, Long> impressions = invocation.getArgument(2);
+            indexedImpressions.putAll(impressions);
+            return null;
+        }).when(mockAnimalSearchRepository).updateRandomRanks(anyList(), anyLong(), anyMap());
+        served(ids.subList(0, PAGE_SIZE), 1);
+        impressionService.flush();
+        randomRankService.shuffle(7);
+        assertThat(indexedImpressions).containsEntry(ids.get(0), 1L);
+
+        List<Long> paged = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            List<Long> content = listing(ids, indexedImpressions).subList(page * PAGE_SIZE, (page + 1) * PAGE_SIZE);
+            paged.addAll(content);
+            // Enough impressions to halve the score of the animals served, flushed while the listing is paged through
+            served(content, applicationProperties.getSearch().getImpressionsScale());
+            impressionService.flush();
+        }
+
+        assertThat(paged).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(ids);
+
+        // The next shuffle scores with the impressions flushed since the last one
+        randomRankService.shuffle(8);
+        assertThat(indexedImpressions).containsEntry(paged.get(0), 1L + applicationProperties.getSearch().getImpressionsScale());
+    }
+
+    /**
+     * The listing of the promoted animals as sorted by the index, with the impression balance of their random score.
+     */
+    private List<Long> listing(List<Long> ids, Map<Long, Long> indexedImpressions) {
+        double scale = applicationProperties.getSearch().getImpressionsScale();
+        return ids.stream()
+            .sorted(Comparator.comparingDouble((Long id) ->
+                RandomUtil.randomRank(id, 42) * scale / (scale + indexedImpressions.getOrDefault(id, 0L)))
+                .reversed()
+                .thenComparing(Comparator.naturalOrder()))
+            .collect(Collectors.toList());
+    }
+
+    private void served(List<Long> ids, long times) {
+        List<AnimalDTO> animals = ids.stream().map(id -> animal(id, true)).collect(Collectors.toList());
+        for (long i = 0; i < times; i++) {
+            impressionService.served(animals);
+        }
+    }
+
+    private static AnimalDTO animal(Long id, boolean promoted) {
+        AnimalDTO animal = new AnimalDTO();
+        animal.setId(id);
+        animal.setName("animal" + id);
+        animal.setPromoted(promoted);
+        return animal;
+    }
+}
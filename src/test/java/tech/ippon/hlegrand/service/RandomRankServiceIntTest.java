@@ -0,0 +1,105 @@
+package tech.ippon.hlegrand.service;
+
+import tech.ippon.hlegrand.RandomizePaginateElasticsearchApp;
+import tech.ippon.hlegrand.config.ApplicationProperties;
+import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.RandomRankShuffle;
+import tech.ippon.hlegrand.repository.AnimalRepository;
+import tech.ippon.hlegrand.repository.RandomRankShuffleRepository;
+import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+import tech.ippon.hlegrand.service.util.RandomUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the RandomRankService.
+ *
+ * @see RandomRankService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RandomizePaginateElasticsearchApp.class)
+public class RandomRankServiceIntTest {
+
+    @Autowired
+    private RandomRankService randomRankService;
+
+    @Autowired
+    private AnimalRepository animalRepository;
+
+    @Autowired
+    private RandomRankShuffleRepository randomRankShuffleRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private Clock clock;
+
+    /**
+     * This repository is mocked in the tech.ippon.hlegrand.repository.search test package.
+     *
+     * @see tech.ippon.hlegrand.repository.search.AnimalSearchRepositoryMockConfiguration
+     */
+    @Autowired
+    private AnimalSearchRepository mockAnimalSearchRepository;
+
+    @Test
+    @Transactional
+    public void assertThatAllAnimalsAreShuffled() {
+        Animal animal = animalRepository.saveAndFlush(new Animal().name("shuffled").promoted(false));
+
+        long shuffled = randomRankService.shuffle(7);
+
+        assertThat(shuffled).isEqualTo(animalRepository.count());
+        verify(mockAnimalSearchRepository).updateRandomRanks(argThat(ids -> ids.contains(animal.getId())), eq(7L), anyMap());
+    }
+
+    @Test
+    @Transactional
+    public void assertThatEachGenerationIsShuffledOnce() {
+        animalRepository.saveAndFlush(new Animal().name("shuffled").promoted(false));
+        long generation = RandomUtil.shuffleGeneration(clock.instant(), applicationProperties.getSearch().getShuffleInSeconds());
+
+        randomRankService.shuffleIfNeeded();
+        // Another check, on this node or another one, finds the generation already claimed
+        randomRankService.shuffleIfNeeded();
+
+        verify(mockAnimalSearchRepository, times(1)).updateRandomRanks(anyList(), eq(generation), anyMap());
+        assertThat(randomRankShuffleRepository.findById(RandomRankShuffle.ID))
+            .map(RandomRankShuffle::getGeneration)
+            .contains(generation);
+    }
+
+    @Test
+    @Transactional
+    public void assertThatFailedShuffleIsReleased() {
+        animalRepository.saveAndFlush(new Animal().name("shuffled").promoted(false));
+        long generation = RandomUtil.shuffleGeneration(clock.instant(), applicationProperties.getSearch().getShuffleInSeconds());
+        doThrow(new ElasticsearchException("unavailable"))
+            .when(mockAnimalSearchRepository).updateRandomRanks(anyList(), eq(generation), anyMap());
+
+        assertThatThrownBy(() -> randomRankService.shuffleIfNeeded()).isInstanceOf(ElasticsearchException.class);
+
+        assertThat(randomRankShuffleRepository.findById(RandomRankShuffle.ID))
+            .map(RandomRankShuffle::getGeneration)
+            .contains(generation - 1);
+    }
+}
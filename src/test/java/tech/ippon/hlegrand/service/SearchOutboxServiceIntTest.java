@@ -0,0 +1,178 @@
+package tech.ippon.hlegrand.service;
+
+import tech.ippon.hlegrand.RandomizePaginateElasticsearchApp;
+import tech.ippon.hlegrand.config.ApplicationProperties;
+import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent.EntityType;
+import tech.ippon.hlegrand.domain.SearchOutboxLease;
+import tech.ippon.hlegrand.repository.AnimalRepository;
+import tech.ippon.hlegrand.repository.SearchOutboxEventRepository;
+import tech.ippon.hlegrand.repository.SearchOutboxLeaseRepository;
+import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the SearchOutboxService.
+ *
+ * @see SearchOutboxService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RandomizePaginateElasticsearchApp.class)
+public class SearchOutboxServiceIntTest {
+
+    @Autowired
+    private SearchOutboxService searchOutboxService;
+
+    @Autowired
+    private SearchOutboxEventRepository searchOutboxEventRepository;
+
+    @Autowired
+    private AnimalRepository animalRepository;
+
+    @Autowired
+    private SearchOutboxLeaseRepository searchOutboxLeaseRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private Clock clock;
+
+    /**
+     * This repository is mocked in the tech.ippon.hlegrand.repository.search test package.
+     *
+     * @see tech.ippon.hlegrand.repository.search.AnimalSearchRepositoryMockConfiguration
+     */
+    @Autowired
+    private AnimalSearchRepository mockAnimalSearchRepository;
+
+    private Animal animal;
+
+    @Before
+    public void init() {
+        animal = new Animal()
+            .name("outbox")
+            .promoted(false);
+    }
+
+    @Test
+    @Transactional
+    public void assertThatChangesAreSentToElasticsearch() {
+        animalRepository.saveAndFlush(animal);
+        searchOutboxService.recordChange(EntityType.ANIMAL, animal.getId());
+
+        searchOutboxService.drain();
+
+        verify(mockAnimalSearchRepository).indexAll(argThat(animals -> animals.contains(animal)));
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityId)
+            .doesNotContain(animal.getId());
+    }
+
+    @Test
+    @Transactional
+    public void assertThatDeletionsAreSentToElasticsearch() {
+        animalRepository.saveAndFlush(animal);
+        animalRepository.delete(animal);
+        searchOutboxService.recordChange(EntityType.ANIMAL, animal.getId());
+
+        searchOutboxService.drain();
+
+        verify(mockAnimalSearchRepository).deleteAllById(Collections.singleton(animal.getId()));
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityId)
+            .doesNotContain(animal.getId());
+    }
+
+    @Test
+    @Transactional
+    public void assertThatFailingChangesAreParked() {
+        Animal poison = new Animal()
+            .name("poison")
+            .promoted(false);
+        animalRepository.saveAndFlush(poison);
+        animalRepository.saveAndFlush(animal);
+        searchOutboxService.recordChange(EntityType.ANIMAL, poison.getId());
+        searchOutboxService.recordChange(EntityType.ANIMAL, animal.getId());
+        doThrow(new ElasticsearchException("mapper_parsing_exception",
+            Collections.singletonMap(poison.getId().toString(), "mapper_parsing_exception")))
+            .when(mockAnimalSearchRepository).indexAll(argThat(animals -> animals.contains(poison)));
+
+        searchOutboxService.drain();
+
+        verify(mockAnimalSearchRepository).indexAll(Collections.singletonList(animal));
+        assertThat(searchOutboxEventRepository.findAll())
+            .filteredOn(event -> event.getEntityId().equals(poison.getId()))
+            .extracting("attempts", "lastError")
+            .containsExactly(tuple(1, "mapper_parsing_exception"));
+
+        int maxAttempts = applicationProperties.getSearchOutbox().getMaxAttempts();
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            searchOutboxService.drain();
+        }
+
+        assertThat(searchOutboxEventRepository.findAll())
+            .filteredOn(event -> event.getEntityId().equals(poison.getId()))
+            .extracting(SearchOutboxEvent::getAttempts)
+            .containsExactly(maxAttempts);
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityId)
+            .doesNotContain(animal.getId());
+    }
+
+    @Test
+    @Transactional
+    public void assertThatChangesAreOnlySentByTheNodeHoldingTheLease() {
+        animalRepository.saveAndFlush(animal);
+        searchOutboxService.recordChange(EntityType.ANIMAL, animal.getId());
+        SearchOutboxLease lease = searchOutboxLeaseRepository.findById(SearchOutboxLease.ID).get();
+        lease.setOwner("another-node");
+        lease.setLeasedUntil(clock.instant().plusSeconds(1));
+        searchOutboxLeaseRepository.saveAndFlush(lease);
+
+        searchOutboxService.drain();
+
+        verify(mockAnimalSearchRepository, never()).indexAll(anyList());
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityId)
+            .contains(animal.getId());
+
+        // The lease of a node stopped while sending expires
+        lease = searchOutboxLeaseRepository.findById(SearchOutboxLease.ID).get();
+        lease.setLeasedUntil(clock.instant().minusSeconds(1));
+        searchOutboxLeaseRepository.saveAndFlush(lease);
+
+        searchOutboxService.drain();
+
+        verify(mockAnimalSearchRepository).indexAll(argThat(animals -> animals.contains(animal)));
+        // The lease is released at the end of the run
+        assertThat(searchOutboxLeaseRepository.claim(SearchOutboxLease.ID, "another-node", clock.instant(),
+            clock.instant().plusSeconds(1))).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalTransactionStateException.class)
+    public void assertThatChangesAreRecordedInTheWritingTransaction() {
+        searchOutboxService.recordChange(EntityType.ANIMAL, 1L);
+    }
+}
@@ -2,8 +2,10 @@ package tech.ippon.hlegrand.service;
 
 import tech.ippon.hlegrand.RandomizePaginateElasticsearchApp;
 import tech.ippon.hlegrand.config.Constants;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent.EntityType;
 import tech.ippon.hlegrand.domain.User;
-import tech.ippon.hlegrand.repository.search.UserSearchRepository;
+import tech.ippon.hlegrand.repository.SearchOutboxEventRepository;
 import tech.ippon.hlegrand.repository.UserRepository;
 import tech.ippon.hlegrand.service.dto.UserDTO;
 import tech.ippon.hlegrand.service.util.RandomUtil;
@@ -29,8 +31,7 @@ import java.util.Optional;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.when;
 
 /**
@@ -49,13 +50,8 @@ public class UserServiceIntTest {
     @Autowired
     private UserService userService;
 
-    /**
-     * This repository is mocked in the tech.ippon.hlegrand.repository.search test package.
-     *
-     * @see tech.ippon.hlegrand.repository.search.UserSearchRepositoryMockConfiguration
-     */
     @Autowired
-    private UserSearchRepository mockUserSearchRepository;
+    private SearchOutboxEventRepository searchOutboxEventRepository;
 
     @Autowired
     private AuditingHandler auditingHandler;
@@ -170,8 +166,10 @@ public class UserServiceIntTest {
         users = userRepository.findAllByActivatedIsFalseAndCreatedDateBefore(now.minus(3, ChronoUnit.DAYS));
         assertThat(users).isEmpty();
 
-        // Verify Elasticsearch mock
-        verify(mockUserSearchRepository, times(1)).delete(user);
+        // Verify the deletion is sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .contains(tuple(EntityType.USER, user.getId()));
     }
 
     @Test
@@ -202,8 +200,10 @@ public class UserServiceIntTest {
         userService.removeNotActivatedUsers();
         assertThat(userRepository.findOneByLogin("johndoe")).isNotPresent();
 
-        // Verify Elasticsearch mock
-        verify(mockUserSearchRepository, times(1)).delete(user);
+        // Verify the deletion is sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .contains(tuple(EntityType.USER, user.getId()));
     }
 
 }
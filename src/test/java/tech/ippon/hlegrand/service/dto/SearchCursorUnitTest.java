@@ -0,0 +1,55 @@
+package tech.ippon.hlegrand.service.dto;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the SearchCursor encoding.
+ *
+ * @see SearchCursor
+ */
+public class SearchCursorUnitTest {
+
+    @Test
+    public void testFirstCursorRoundTrip() {
+        SearchCursor cursor = SearchCursor.first(SearchOrder.RANDOM, 42);
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.isFirst()).isTrue();
+    }
+
+    @Test
+    public void testNextCursorKeepsOrderAndSeed() {
+        SearchCursor cursor = SearchCursor.first(SearchOrder.PROMOTED_FIRST, 42).after(2.3456789f, 1234L);
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.getOrder()).isEqualTo(SearchOrder.PROMOTED_FIRST);
+        assertThat(decoded.getSeed()).isEqualTo(42);
+        assertThat(decoded.getScore()).isEqualTo(2.3456789f);
+        assertThat(decoded.getId()).isEqualTo(1234L);
+        assertThat(decoded.isAfter()).isTrue();
+    }
+
+    @Test
+    public void testPreviousCursorKeepsDirection() {
+        SearchCursor cursor = SearchCursor.first(SearchOrder.RANDOM, 42).before(0.5f, 1234L);
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.isAfter()).isFalse();
+        assertThat(decoded).isNotEqualTo(cursor.after(0.5f, 1234L));
+    }
+
+    @Test
+    public void testEncodedCursorIsUrlSafe() {
+        String encoded = SearchCursor.first(SearchOrder.RELEVANCE, 0).after(0.5f, Long.MAX_VALUE).encode();
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        assertThatThrownBy(() -> SearchCursor.decode("not a cursor")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchCursor.decode("Zm9vOmJhcg")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,60 @@
+package tech.ippon.hlegrand.service.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the FeistelPermutation.
+ *
+ * @see FeistelPermutation
+ */
+public class FeistelPermutationUnitTest {
+
+    @Test
+    public void testIsAPermutation() {
+        for (long size : new long[]{1, 2, 3, 7, 100, 1000, 4096, 5000}) {
+            FeistelPermutation permutation = new FeistelPermutation(size, 42);
+            Set<Long> images = new HashSet<>();
+            for (long index = 0; index < size; index++) {
+                long image = permutation.apply(index);
+                assertThat(image).isBetween(0L, size - 1);
+                images.add(image);
+            }
+            assertThat(images).hasSize((int) size);
+        }
+    }
+
+    @Test
+    public void testSameSeedSameOrder() {
+        FeistelPermutation permutation = new FeistelPermutation(1000, 42);
+        FeistelPermutation samePermutation = new FeistelPermutation(1000, 42);
+        for (long index = 0; index < 1000; index++) {
+            assertThat(samePermutation.apply(index)).isEqualTo(permutation.apply(index));
+        }
+    }
+
+    @Test
+    public void testOtherSeedOtherOrder() {
+        FeistelPermutation permutation = new FeistelPermutation(1000, 42);
+        FeistelPermutation otherPermutation = new FeistelPermutation(1000, 43);
+        int moved = 0;
+        for (long index = 0; index < 1000; index++) {
+            if (otherPermutation.apply(index) != permutation.apply(index)) {
+                moved++;
+            }
+        }
+        assertThat(moved).isGreaterThan(900);
+    }
+
+    @Test
+    public void testIndexOutOfRange() {
+        FeistelPermutation permutation = new FeistelPermutation(10, 42);
+        assertThatThrownBy(() -> permutation.apply(10)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> new FeistelPermutation(0, 42)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
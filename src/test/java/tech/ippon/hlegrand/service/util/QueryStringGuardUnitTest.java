@@ -0,0 +1,69 @@
+package tech.ippon.hlegrand.service.util;
+
+import tech.ippon.hlegrand.web.rest.errors.QueryRejectedException;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the QueryStringGuard.
+ *
+ * @see QueryStringGuard
+ */
+public class QueryStringGuardUnitTest {
+
+    private final QueryStringGuard guard = new QueryStringGuard(100, 4, 10, 2);
+
+    @Test
+    public void testCheapQueriesAreAccepted() {
+        assertThatCode(() -> guard.check("name:aaa AND promoted:true")).doesNotThrowAnyException();
+        assertThatCode(() -> guard.check("name:aa* OR name:\"aaa bbb\"~2")).doesNotThrowAnyException();
+        assertThatCode(() -> guard.check("name:/a[bc]+/ name:aab~ name:aac~1")).doesNotThrowAnyException();
+        assertThatCode(() -> guard.check("name:* AND *:*")).doesNotThrowAnyException();
+    }
+
+    @Test
+    public void testLeadingWildcardIsRejected() {
+        assertThatThrownBy(() -> guard.check("*aaa")).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("leading wildcard");
+        assertThatThrownBy(() -> guard.check("name:aaa OR name:?bb")).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("leading wildcard");
+    }
+
+    @Test
+    public void testLongRegexpIsRejected() {
+        assertThatThrownBy(() -> guard.check("name:/(a|b|c|d|e)*f/")).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("regular expression");
+    }
+
+    @Test
+    public void testTooManyFuzzyTermsAreRejected() {
+        assertThatThrownBy(() -> guard.check("aaa~ bbb~1 ccc~2")).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("fuzzy terms");
+    }
+
+    @Test
+    public void testTooManyClausesAreRejected() {
+        assertThatCode(() -> guard.check("a b (c d)")).doesNotThrowAnyException();
+        assertThatThrownBy(() -> guard.check("a b (c (d e))")).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("clauses");
+    }
+
+    @Test
+    public void testLongQueryIsRejected() {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < 101; i++) {
+            query.append('a');
+        }
+        assertThatThrownBy(() -> guard.check(query.toString())).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("longer than 100");
+    }
+
+    @Test
+    public void testInvalidQueryIsRejected() {
+        assertThatThrownBy(() -> guard.check("name:(aaa OR")).isInstanceOf(QueryRejectedException.class)
+            .hasMessageContaining("cannot be parsed");
+    }
+}
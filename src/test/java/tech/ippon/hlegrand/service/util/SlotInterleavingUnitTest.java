@@ -0,0 +1,75 @@
+package tech.ippon.hlegrand.service.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the SlotInterleaving.
+ *
+ * @see SlotInterleaving
+ */
+public class SlotInterleavingUnitTest {
+
+    @Test
+    public void testPromotedSlotEveryInterval() {
+        SlotInterleaving slots = new SlotInterleaving(3, 100, 100);
+
+        assertThat(merge(slots, 0, 9)).isEqualTo("POOPOOPOO");
+        assertThat(slots.promotedBefore(9)).isEqualTo(3);
+        assertThat(slots.organicBefore(9)).isEqualTo(6);
+    }
+
+    @Test
+    public void testOrganicAfterTheLastPromoted() {
+        SlotInterleaving slots = new SlotInterleaving(3, 2, 5);
+
+        assertThat(merge(slots, 0, 7)).isEqualTo("POOPOOO");
+        assertThat(slots.size()).isEqualTo(7);
+    }
+
+    @Test
+    public void testPromotedAfterTheLastOrganic() {
+        SlotInterleaving slots = new SlotInterleaving(3, 5, 3);
+
+        assertThat(merge(slots, 0, 8)).isEqualTo("POOPOPPP");
+        assertThat(slots.promotedBefore(8)).isEqualTo(5);
+        assertThat(slots.organicBefore(8)).isEqualTo(3);
+    }
+
+    @Test
+    public void testAPageDoesNotDependOnThePreviousOnes() {
+        SlotInterleaving slots = new SlotInterleaving(4, 30, 50);
+        String listing = merge(slots, 0, 80);
+
+        for (long from = 0; from < 80; from += 7) {
+            long to = Math.min(from + 7, 80);
+            assertThat(merge(slots, from, to)).isEqualTo(listing.substring((int) from, (int) to));
+            long promoted = listing.substring(0, (int) from).chars().filter(c -> c == 'P').count();
+            assertThat(slots.promotedBefore(from)).isEqualTo(promoted);
+            assertThat(slots.organicBefore(from)).isEqualTo(from - promoted);
+        }
+    }
+
+    @Test
+    public void testUnboundedListings() {
+        SlotInterleaving slots = SlotInterleaving.unbounded(5);
+
+        assertThat(slots.promotedBefore(1000)).isEqualTo(200);
+        assertThat(slots.organicBefore(1000)).isEqualTo(800);
+    }
+
+    @Test
+    public void testInvalidInterval() {
+        assertThatThrownBy(() -> new SlotInterleaving(0, 1, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String merge(SlotInterleaving slots, long from, long to) {
+        StringBuilder listing = new StringBuilder();
+        for (long position = from; position < to; position++) {
+            listing.append(slots.isPromoted(position) ? 'P' : 'O');
+        }
+        return listing.toString();
+    }
+}
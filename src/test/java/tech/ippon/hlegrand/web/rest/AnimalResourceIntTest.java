@@ -2,25 +2,56 @@ package tech.ippon.hlegrand.web.rest;
 
 import tech.ippon.hlegrand.RandomizePaginateElasticsearchApp;
 
+import tech.ippon.hlegrand.config.ApplicationProperties;
 import tech.ippon.hlegrand.domain.Animal;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent;
+import tech.ippon.hlegrand.domain.SearchOutboxEvent.EntityType;
 import tech.ippon.hlegrand.repository.AnimalRepository;
+import tech.ippon.hlegrand.repository.SearchOutboxEventRepository;
 import tech.ippon.hlegrand.repository.search.AnimalSearchRepository;
+import tech.ippon.hlegrand.repository.search.OffsetPageRequest;
+import tech.ippon.hlegrand.repository.search.SearchAfterPage;
+import tech.ippon.hlegrand.repository.search.SearchIds;
+import tech.ippon.hlegrand.repository.search.SearchPage;
+import tech.ippon.hlegrand.repository.search.SearchTimeoutException;
+import tech.ippon.hlegrand.security.jwt.JWTAuthenticationDetails;
+import tech.ippon.hlegrand.service.AnimalSearchCacheService;
 import tech.ippon.hlegrand.service.AnimalService;
+import tech.ippon.hlegrand.service.ReindexService;
 import tech.ippon.hlegrand.service.dto.AnimalDTO;
+import tech.ippon.hlegrand.service.dto.KeysetCursor;
+import tech.ippon.hlegrand.service.dto.SearchCursor;
+import tech.ippon.hlegrand.service.dto.SearchOrder;
 import tech.ippon.hlegrand.service.mapper.AnimalMapper;
+import tech.ippon.hlegrand.service.util.RandomUtil;
 import tech.ippon.hlegrand.web.rest.errors.ExceptionTranslator;
 
+import com.jayway.jsonpath.JsonPath;
+import org.elasticsearch.common.lucene.search.function.CombineFunction;
+import org.elasticsearch.common.lucene.search.function.FiltersFunctionScoreQuery;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.ElasticsearchException;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -28,14 +59,33 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
 
 import javax.persistence.EntityManager;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.LongStream;
 
 
 import static tech.ippon.hlegrand.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.constantScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.functionScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.prefixQuery;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.randomFunction;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.scriptFunction;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.weightFactorFunction;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -64,6 +114,9 @@ public class AnimalResourceIntTest {
     @Autowired
     private AnimalService animalService;
 
+    @Autowired
+    private SearchOutboxEventRepository searchOutboxEventRepository;
+
     /**
      * This repository is mocked in the tech.ippon.hlegrand.repository.search test package.
      *
@@ -81,12 +134,21 @@ public class AnimalResourceIntTest {
     @Autowired
     private ExceptionTranslator exceptionTranslator;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private EntityManager em;
 
     @Autowired
     private Validator validator;
 
+    @Autowired
+    private Clock clock;
+
     private MockMvc restAnimalMockMvc;
 
     private Animal animal;
@@ -94,7 +156,9 @@ public class AnimalResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final AnimalResource animalResource = new AnimalResource(animalService);
+        cacheManager.getCache(AnimalSearchCacheService.SEARCH_RESULTS_CACHE).clear();
+        cacheManager.getCache(AnimalSearchCacheService.SEARCH_IDS_CACHE).clear();
+        final AnimalResource animalResource = new AnimalResource(animalService, new ReindexService(animalService, new SyncTaskExecutor(), clock));
         this.restAnimalMockMvc = MockMvcBuilders.standaloneSetup(animalResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -140,8 +204,10 @@ public class AnimalResourceIntTest {
         assertThat(testAnimal.getName()).isEqualTo(DEFAULT_NAME);
         assertThat(testAnimal.isPromoted()).isEqualTo(DEFAULT_PROMOTED);
 
-        // Validate the Animal in Elasticsearch
-        verify(mockAnimalSearchRepository, times(1)).save(testAnimal);
+        // Validate the Animal change is sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .contains(tuple(EntityType.ANIMAL, testAnimal.getId()));
     }
 
     @Test
@@ -163,8 +229,10 @@ public class AnimalResourceIntTest {
         List<Animal> animalList = animalRepository.findAll();
         assertThat(animalList).hasSize(databaseSizeBeforeCreate);
 
-        // Validate the Animal in Elasticsearch
-        verify(mockAnimalSearchRepository, times(0)).save(animal);
+        // Validate the Animal change is not sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .doesNotContain(tuple(EntityType.ANIMAL, animal.getId()));
     }
 
     @Test
@@ -201,6 +269,134 @@ public class AnimalResourceIntTest {
             .andExpect(jsonPath("$.[*].promoted").value(hasItem(DEFAULT_PROMOTED.booleanValue())));
     }
     
+    @Test
+    @Transactional
+    public void getAllAnimalsWithCursor() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        Animal otherAnimal = new Animal().name(UPDATED_NAME).promoted(UPDATED_PROMOTED);
+        animalRepository.saveAndFlush(otherAnimal);
+
+        // Get the page starting at the animal
+        String firstCursor = KeysetCursor.after(animal.getId() - 1).encode();
+        String nextCursor = KeysetCursor.after(animal.getId()).encode();
+        restAnimalMockMvc.perform(get("/api/animals?cursor=" + firstCursor + "&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string("Link", containsString("cursor=" + nextCursor + "&size=1>; rel=\"next\"")))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+
+        // Get the next page, which is the last one
+        String previousCursor = KeysetCursor.before(otherAnimal.getId()).encode();
+        restAnimalMockMvc.perform(get("/api/animals?cursor=" + nextCursor + "&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", not(containsString("rel=\"next\""))))
+            .andExpect(header().string("Link", containsString("cursor=" + previousCursor + "&size=1>; rel=\"prev\"")))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(otherAnimal.getId().intValue())))
+            .andExpect(jsonPath("$.[*].name").value(hasItem(UPDATED_NAME)));
+
+        // Go back to the previous page
+        restAnimalMockMvc.perform(get("/api/animals?cursor=" + previousCursor + "&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", containsString("cursor=" + nextCursor + "&size=1>; rel=\"next\"")))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+
+        // The first page has no previous page
+        restAnimalMockMvc.perform(get("/api/animals?cursor=&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", not(containsString("rel=\"prev\""))));
+    }
+
+    @Test
+    @Transactional
+    public void getAllAnimalsInRandomOrder() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+
+        // Get all the animals in a single page
+        String firstListing = restAnimalMockMvc.perform(get("/api/animals?order=random&seed=42&size=2000"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(header().string("Link", containsString("order=random&seed=42")))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())))
+            .andReturn().getResponse().getContentAsString();
+
+        // Validate the order is the same with the same seed, and changes with another one
+        restAnimalMockMvc.perform(get("/api/animals?order=random&seed=42&size=2000"))
+            .andExpect(content().string(firstListing));
+        restAnimalMockMvc.perform(get("/api/animals?order=random&seed=43&size=2000"))
+            .andExpect(content().string(not(firstListing)));
+    }
+
+    @Test
+    @Transactional
+    public void getAllAnimalsInRandomOrderHasFullPages() throws Exception {
+        // Initialize the database, with a gap in the ids
+        animalRepository.saveAndFlush(animal);
+        Animal deleted = animalRepository.saveAndFlush(new Animal().name("deleted").promoted(false));
+        animalRepository.saveAndFlush(new Animal().name("last").promoted(false));
+        animalRepository.delete(deleted);
+        animalRepository.flush();
+        long count = animalRepository.count();
+
+        // Get every animal once, in pages of one animal
+        List<Integer> ids = new ArrayList<>();
+        for (int page = 0; page < count; page++) {
+            String content = restAnimalMockMvc.perform(get("/api/animals?order=random&seed=42&size=1&page=" + page))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", Long.toString(count)))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andReturn().getResponse().getContentAsString();
+            ids.add(JsonPath.read(content, "$[0].id"));
+        }
+
+        assertThat(ids).doesNotHaveDuplicates()
+            .contains(animal.getId().intValue())
+            .doesNotContain(deleted.getId().intValue());
+    }
+
+    @Test
+    @Transactional
+    public void getAllAnimalsInSearchOrderIsRejected() throws Exception {
+        // The search orders are not available for the listing read from the database
+        restAnimalMockMvc.perform(get("/api/animals?order=shuffled"))
+            .andExpect(status().isBadRequest());
+        restAnimalMockMvc.perform(get("/api/animals?order=relevance"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getRandomAnimals() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.search(
+            functionScoreQuery(boolQuery().filter(termQuery("promoted", true)), randomFunction(42)).boostMode(CombineFunction.REPLACE),
+            PageRequest.of(0, 5, Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id"))), "42"))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+
+        // Get a sample of the promoted animals
+        restAnimalMockMvc.perform(get("/api/animals/random?n=5&promoted=true&seed=42"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getRandomAnimalsWithInvalidSize() throws Exception {
+        restAnimalMockMvc.perform(get("/api/animals/random?n=0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllAnimalsWithInvalidCursor() throws Exception {
+        restAnimalMockMvc.perform(get("/api/animals?cursor=invalid"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getAnimal() throws Exception {
@@ -253,8 +449,10 @@ public class AnimalResourceIntTest {
         assertThat(testAnimal.getName()).isEqualTo(UPDATED_NAME);
         assertThat(testAnimal.isPromoted()).isEqualTo(UPDATED_PROMOTED);
 
-        // Validate the Animal in Elasticsearch
-        verify(mockAnimalSearchRepository, times(1)).save(testAnimal);
+        // Validate the Animal change is sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .contains(tuple(EntityType.ANIMAL, testAnimal.getId()));
     }
 
     @Test
@@ -275,8 +473,10 @@ public class AnimalResourceIntTest {
         List<Animal> animalList = animalRepository.findAll();
         assertThat(animalList).hasSize(databaseSizeBeforeUpdate);
 
-        // Validate the Animal in Elasticsearch
-        verify(mockAnimalSearchRepository, times(0)).save(animal);
+        // Validate the Animal change is not sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .doesNotContain(tuple(EntityType.ANIMAL, animal.getId()));
     }
 
     @Test
@@ -296,8 +496,10 @@ public class AnimalResourceIntTest {
         List<Animal> animalList = animalRepository.findAll();
         assertThat(animalList).hasSize(databaseSizeBeforeDelete - 1);
 
-        // Validate the Animal in Elasticsearch
-        verify(mockAnimalSearchRepository, times(1)).deleteById(animal.getId());
+        // Validate the Animal deletion is sent to Elasticsearch
+        assertThat(searchOutboxEventRepository.findAll())
+            .extracting(SearchOutboxEvent::getEntityType, SearchOutboxEvent::getEntityId)
+            .contains(tuple(EntityType.ANIMAL, animal.getId()));
     }
 
     @Test
@@ -305,17 +507,472 @@ public class AnimalResourceIntTest {
     public void searchAnimal() throws Exception {
         // Initialize the database
         animalRepository.saveAndFlush(animal);
-        when(mockAnimalSearchRepository.search(queryStringQuery("id:" + animal.getId()), PageRequest.of(0, 20)))
-            .thenReturn(new PageImpl<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+        when(mockAnimalSearchRepository.search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
         // Search the animal
         restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
             .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())))
             .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)))
+            .andExpect(jsonPath("$.[*].promoted").value(hasItem(DEFAULT_PROMOTED.booleanValue())))
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(header().doesNotExist("X-Total-Count-Relation"));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalTerminatedEarly() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 20), 100, true));
+        // The shards stopped collecting, the total is a lower bound
+        restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "100"))
+            .andExpect(header().string("X-Total-Count-Relation", "gte"));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalTimedOutIsNotCached() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null))
+            .thenThrow(new SearchTimeoutException("Search timed out after 2000 ms"))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+
+        restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
+            .andExpect(status().isServiceUnavailable());
+        // The partial results were not cached, the next search is sent to Elasticsearch
+        restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+        verify(mockAnimalSearchRepository, times(2)).search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null);
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithFilters() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.search(boolQuery()
+                .must(queryString("animals"))
+                .filter(termQuery("promoted", DEFAULT_PROMOTED))
+                .filter(prefixQuery("name", "aaa"))
+                .filter(rangeQuery("id").gte(animal.getId()).lte(null)),
+            PageRequest.of(0, 20), null))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+        // Search the animal
+        restAnimalMockMvc.perform(get("/api/_search/animals?query=animals&promoted={promoted}&namePrefix=AAA&minId={minId}",
+            DEFAULT_PROMOTED, animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", containsString("?promoted=" + DEFAULT_PROMOTED + "&namePrefix=AAA&minId=" + animal.getId())))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithFilterToEncode() throws Exception {
+        when(mockAnimalSearchRepository.search(boolQuery().filter(prefixQuery("name", "a b%c&d")),
+            PageRequest.of(0, 20), null))
+            .thenReturn(new SearchPage<>(Collections.emptyList(), PageRequest.of(0, 20), 0));
+
+        restAnimalMockMvc.perform(get("/api/_search/animals?namePrefix={namePrefix}", "a b%c&d"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", containsString("?namePrefix=a%20b%25c%26d&page=0&size=20>; rel=\"first\"")));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithFiltersOnly() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.search(boolQuery().filter(termQuery("promoted", DEFAULT_PROMOTED)), PageRequest.of(0, 20), null))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+        // Search the animal, without query string
+        restAnimalMockMvc.perform(get("/api/_search/animals?promoted={promoted}", DEFAULT_PROMOTED))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", not(containsString("query="))))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithExpensiveQuery() throws Exception {
+        // A leading wildcard scans every term of the index, it is never sent to Elasticsearch
+        restAnimalMockMvc.perform(get("/api/_search/animals?query={query}", "*aaa"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.queryrejected"));
+        restAnimalMockMvc.perform(get("/api/_search/animals?query={query}&order=random&seed=42", "name:(aaa OR"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.queryrejected"));
+        restAnimalMockMvc.perform(get("/api/animals/random?n=5&query={query}", "a~ b~ c~ d~"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithIdsOnly() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.searchIds(queryString("id:" + animal.getId()), PageRequest.of(0, 20)))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal.getId()), PageRequest.of(0, 1), 1));
+        // Search the animal, it is read from the database
+        applicationProperties.getSearch().setIdsOnly(true);
+        try {
+            restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())))
+                .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)));
+        } finally {
+            applicationProperties.getSearch().setIdsOnly(false);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalIsCachedUntilAnAnimalChanges() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+
+        // Search the animal twice, with a different spacing
+        restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
+            .andExpect(status().isOk());
+        restAnimalMockMvc.perform(get("/api/_search/animals?query={query}", "  id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+        verify(mockAnimalSearchRepository, times(1)).search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null);
+
+        // Update the animal, the next search is sent to Elasticsearch
+        animalService.save(animalMapper.toDto(animal));
+        restAnimalMockMvc.perform(get("/api/_search/animals?query=id:" + animal.getId()))
+            .andExpect(status().isOk());
+        verify(mockAnimalSearchRepository, times(2)).search(queryString("id:" + animal.getId()), PageRequest.of(0, 20), null);
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalInRandomOrder() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.searchIds(
+            functionScoreQuery(queryString("id:" + animal.getId()), randomFunction(42)).boostMode(CombineFunction.REPLACE),
+            1000, null, null, "42"))
+            .thenReturn(new SearchIds(new long[]{animal.getId()}, 1));
+        // Search the animal
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(header().string("Link", containsString("order=random&seed=42")))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())))
+            .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalInRandomOrderIsReadFromTheSameIds() throws Exception {
+        // Initialize the database
+        Animal otherAnimal = animalRepository.saveAndFlush(createEntity(em).name(UPDATED_NAME));
+        animalRepository.saveAndFlush(animal);
+        QueryBuilder query = functionScoreQuery(queryString("promoted:" + DEFAULT_PROMOTED), randomFunction(42))
+            .boostMode(CombineFunction.REPLACE);
+        when(mockAnimalSearchRepository.searchIds(query, 1000, null, null, "42"))
+            .thenReturn(new SearchIds(new long[]{animal.getId(), otherAnimal.getId()}, 2));
+
+        // Read the two pages, the ids are searched once
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&size=1&query=promoted:" + DEFAULT_PROMOTED))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[0].id").value(animal.getId().intValue()));
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&size=1&page=1&query=promoted:" + DEFAULT_PROMOTED))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(otherAnimal.getId().intValue()));
+        verify(mockAnimalSearchRepository, times(1)).searchIds(query, 1000, null, null, "42");
+
+        // The pages beyond the ids kept are searched
+        when(mockAnimalSearchRepository.search(query,
+            PageRequest.of(1000, 20, Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id"))), "42"))
+            .thenReturn(new SearchPage<>(Collections.emptyList(), PageRequest.of(1000, 20), 2));
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&page=1000&query=promoted:" + DEFAULT_PROMOTED))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalInRandomOrderReadsTheIdsInChunks() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        QueryBuilder query = functionScoreQuery(queryString("name:" + DEFAULT_NAME), randomFunction(42))
+            .boostMode(CombineFunction.REPLACE);
+        long[] firstIds = LongStream.range(-1000, 0).toArray();
+        when(mockAnimalSearchRepository.searchIds(query, 1000, null, null, "42"))
+            .thenReturn(new SearchIds(firstIds, 1001, 0.5f, false));
+        when(mockAnimalSearchRepository.searchIds(query, 1000, 0.5f, -1L, "42"))
+            .thenReturn(new SearchIds(new long[]{animal.getId()}, 1001, 0.1f, true));
+
+        // The first page only reads the first chunk of ids
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&query=name:" + DEFAULT_NAME))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+        verify(mockAnimalSearchRepository, never()).searchIds(query, 1000, 0.5f, -1L, "42");
+
+        // A later page reads the next chunk after the last id
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&page=50&query=name:" + DEFAULT_NAME))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1001"))
+            .andExpect(jsonPath("$.[*].id").value(contains(animal.getId().intValue())));
+        verify(mockAnimalSearchRepository, times(1)).searchIds(query, 1000, null, null, "42");
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalInRandomOrderOfTheUser() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken("user", "token");
+        authentication.setDetails(new JWTAuthenticationDetails(42));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        int seed = RandomUtil.rotateSeed(42, clock.instant(), 86400);
+        when(mockAnimalSearchRepository.searchIds(
+            functionScoreQuery(queryString("id:" + animal.getId()), randomFunction(seed)).boostMode(CombineFunction.REPLACE),
+            1000, null, null, Integer.toString(seed)))
+            .thenReturn(new SearchIds(new long[]{animal.getId()}, 1));
+        // Search the animal without a seed
+        try {
+            restAnimalMockMvc.perform(get("/api/_search/animals?order=random&query=id:" + animal.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Random-Seed", Integer.toString(seed)))
+                .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalShuffled() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        long generation = RandomUtil.shuffleGeneration(clock.instant(), applicationProperties.getSearch().getShuffleInSeconds());
+        when(mockAnimalSearchRepository.searchShuffled(constantScoreQuery(queryString("id:" + animal.getId())),
+            PageRequest.of(0, 20), "shuffle-" + generation))
+            .thenReturn(new PageImpl<>(Collections.singletonList(animal), PageRequest.of(0, 1), 1));
+        // Search the animal in the shuffled order
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=shuffled&query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Random-Seed"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalPromotedFirst() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        FilterFunctionBuilder[] functions = {
+            new FilterFunctionBuilder(randomFunction(42)),
+            new FilterFunctionBuilder(termQuery("promoted", true), weightFactorFunction(2f)),
+            new FilterFunctionBuilder(termQuery("promoted", true), impressionBalance())
+        };
+        when(mockAnimalSearchRepository.searchIds(
+            functionScoreQuery(queryString("id:" + animal.getId()), functions)
+                .scoreMode(FiltersFunctionScoreQuery.ScoreMode.SUM)
+                .boostMode(CombineFunction.REPLACE),
+            1000, null, null, "42"))
+            .thenReturn(new SearchIds(new long[]{animal.getId()}, 1));
+        // Search the animal
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=promoted&seed=42&query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())))
             .andExpect(jsonPath("$.[*].promoted").value(hasItem(DEFAULT_PROMOTED.booleanValue())));
     }
 
+    @Test
+    @Transactional
+    public void searchAnimalInterleaved() throws Exception {
+        // Initialize the database
+        Animal promotedAnimal = animalRepository.saveAndFlush(createEntity(em).name(UPDATED_NAME).promoted(true));
+        animalRepository.saveAndFlush(animal);
+        Sort randomSort = Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id"));
+        QueryBuilder promotedQuery = functionScoreQuery(
+            boolQuery().must(queryString("animals")).filter(termQuery("promoted", true)),
+            new FilterFunctionBuilder[]{new FilterFunctionBuilder(randomFunction(42)), new FilterFunctionBuilder(impressionBalance())})
+            .scoreMode(FiltersFunctionScoreQuery.ScoreMode.MULTIPLY)
+            .boostMode(CombineFunction.REPLACE);
+        QueryBuilder organicQuery = functionScoreQuery(
+            boolQuery().must(queryString("animals")).filter(termQuery("promoted", false)), randomFunction(42))
+            .boostMode(CombineFunction.REPLACE);
+        // The first slot is promoted, the two next ones organic
+        when(mockAnimalSearchRepository.search(promotedQuery, new OffsetPageRequest(0, 1, randomSort), "42"))
+            .thenReturn(new SearchPage<>(Collections.singletonList(promotedAnimal), PageRequest.of(0, 1), 1));
+        when(mockAnimalSearchRepository.search(organicQuery, new OffsetPageRequest(0, 2, randomSort), "42"))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 2), 1));
+
+        // Search the animals
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=interleaved&seed=42&size=3&query=animals"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(jsonPath("$.[0].id").value(promotedAnimal.getId().intValue()))
+            .andExpect(jsonPath("$.[1].id").value(animal.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalInterleavedWithoutPromotedAnimals() throws Exception {
+        // Initialize the database
+        Animal otherAnimal = animalRepository.saveAndFlush(createEntity(em).name(UPDATED_NAME));
+        animalRepository.saveAndFlush(animal);
+        Sort randomSort = Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id"));
+        QueryBuilder promotedQuery = functionScoreQuery(
+            boolQuery().must(queryString("animals")).filter(termQuery("promoted", true)),
+            new FilterFunctionBuilder[]{new FilterFunctionBuilder(randomFunction(42)), new FilterFunctionBuilder(impressionBalance())})
+            .scoreMode(FiltersFunctionScoreQuery.ScoreMode.MULTIPLY)
+            .boostMode(CombineFunction.REPLACE);
+        QueryBuilder organicQuery = functionScoreQuery(
+            boolQuery().must(queryString("animals")).filter(termQuery("promoted", false)), randomFunction(42))
+            .boostMode(CombineFunction.REPLACE);
+        when(mockAnimalSearchRepository.search(promotedQuery, new OffsetPageRequest(0, 1, randomSort), "42"))
+            .thenReturn(new SearchPage<>(Collections.emptyList(), PageRequest.of(0, 1), 0));
+        when(mockAnimalSearchRepository.search(organicQuery, new OffsetPageRequest(0, 1, randomSort), "42"))
+            .thenReturn(new SearchPage<>(Collections.singletonList(animal), PageRequest.of(0, 1), 2));
+        when(mockAnimalSearchRepository.search(organicQuery, new OffsetPageRequest(0, 2, randomSort), "42"))
+            .thenReturn(new SearchPage<>(Arrays.asList(animal, otherAnimal), PageRequest.of(0, 2), 2));
+
+        // The promoted slot is given to an organic animal, which is searched again
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=interleaved&seed=42&size=2&query=animals"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[0].id").value(animal.getId().intValue()))
+            .andExpect(jsonPath("$.[1].id").value(otherAnimal.getId().intValue()));
+        verify(mockAnimalSearchRepository, times(1)).search(organicQuery, new OffsetPageRequest(0, 2, randomSort), "42");
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalInterleavedWithCursor() throws Exception {
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=interleaved&seed=42&cursor=&query=id:1"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithCursor() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        QueryBuilder query = functionScoreQuery(queryString("id:" + animal.getId()), randomFunction(42))
+            .boostMode(CombineFunction.REPLACE);
+        long secondId = animal.getId() + 1;
+        when(mockAnimalSearchRepository.searchAfter(query, 1, 10000, null, null, false, "42"))
+            .thenReturn(new SearchAfterPage<>(Collections.singletonList(animal), 2, false, 0.5f, animal.getId(), 0.5f,
+                animal.getId(), true));
+        // Search the first page
+        String nextCursor = SearchCursor.first(SearchOrder.RANDOM, 42).after(0.5f, animal.getId()).encode();
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=random&seed=42&cursor=&size=1&query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(header().string("Link", containsString("cursor=" + nextCursor + "&size=1&query=")))
+            .andExpect(header().string("Link", not(containsString("rel=\"prev\""))))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+
+        when(mockAnimalSearchRepository.searchAfter(query, 1, 10000, 0.5f, animal.getId(), false, "42"))
+            .thenReturn(new SearchAfterPage<>(Collections.singletonList(animal), 2, false, 0.25f, secondId, 0.25f,
+                secondId, false));
+        // Search the next page, the order and seed come from the cursor
+        String previousCursor = SearchCursor.first(SearchOrder.RANDOM, 42).before(0.25f, secondId).encode();
+        restAnimalMockMvc.perform(get("/api/_search/animals?cursor=" + nextCursor + "&size=1&query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Random-Seed", "42"))
+            .andExpect(header().string("Link", containsString("cursor=" + previousCursor + "&size=1&query=id")))
+            .andExpect(header().string("Link", not(containsString("rel=\"next\""))));
+
+        when(mockAnimalSearchRepository.searchAfter(query, 1, 10000, 0.25f, secondId, true, "42"))
+            .thenReturn(new SearchAfterPage<>(Collections.singletonList(animal), 2, false, 0.5f, animal.getId(), 0.5f,
+                animal.getId(), false));
+        // Search the previous page, read backward from the first animal of the second page
+        restAnimalMockMvc.perform(get("/api/_search/animals?cursor=" + previousCursor + "&size=1&query=id:" + animal.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", containsString("cursor=" + nextCursor + "&size=1&query=id")))
+            .andExpect(header().string("Link", not(containsString("rel=\"prev\""))))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(animal.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithInvalidCursor() throws Exception {
+        restAnimalMockMvc.perform(get("/api/_search/animals?cursor=invalid&query=id:1"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void searchAnimalWithInvalidOrder() throws Exception {
+        restAnimalMockMvc.perform(get("/api/_search/animals?order=unknown&query=id:1"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void reindexAnimals() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.createIndexVersion()).thenReturn("animal_v1");
+
+        restAnimalMockMvc.perform(post("/api/_search/animals"))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string(HttpHeaders.LOCATION, startsWith("/management/reindex-jobs/")))
+            .andExpect(jsonPath("$.id").isNotEmpty());
+
+        // Validate the Animal was sent in a bulk request to the new index, which was then published
+        verify(mockAnimalSearchRepository, atLeastOnce()).bulkIndex(eq("animal_v1"), argThat(animals -> animals.contains(animal)));
+        verify(mockAnimalSearchRepository).publishIndexVersion("animal_v1");
+    }
+
+    @Test
+    @Transactional
+    public void reindexAnimalsRejectedByElasticsearch() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.createIndexVersion()).thenReturn("animal_v1");
+        when(mockAnimalSearchRepository.bulkIndex(eq("animal_v1"), anyList()))
+            .thenAnswer(invocation -> invocation.getArgument(1))
+            .thenReturn(Collections.emptyList());
+
+        restAnimalMockMvc.perform(post("/api/_search/animals"))
+            .andExpect(status().isAccepted());
+
+        // Validate the rejected Animals were sent again before the new index was published
+        verify(mockAnimalSearchRepository, atLeast(2)).bulkIndex(eq("animal_v1"), argThat(animals -> animals.contains(animal)));
+        verify(mockAnimalSearchRepository).publishIndexVersion("animal_v1");
+    }
+
+    @Test
+    @Transactional
+    public void reindexAnimalsFailedDeletesTheNewIndex() throws Exception {
+        // Initialize the database
+        animalRepository.saveAndFlush(animal);
+        when(mockAnimalSearchRepository.createIndexVersion()).thenReturn("animal_v1");
+        when(mockAnimalSearchRepository.bulkIndex(eq("animal_v1"), anyList()))
+            .thenThrow(new ElasticsearchException("Elasticsearch is down"));
+
+        restAnimalMockMvc.perform(post("/api/_search/animals"))
+            .andExpect(status().isAccepted());
+
+        // Validate the new index was deleted instead of being published
+        verify(mockAnimalSearchRepository).deleteIndexVersion("animal_v1");
+        verify(mockAnimalSearchRepository, never()).publishIndexVersion(anyString());
+    }
+
     @Test
     @Transactional
     public void equalsVerifier() throws Exception {
@@ -353,4 +1010,21 @@ public class AnimalResourceIntTest {
         assertThat(animalMapper.fromId(42L).getId()).isEqualTo(42);
         assertThat(animalMapper.fromId(null)).isNull();
     }
+
+    /**
+     * The score of the promoted animals, decreasing with their impressions.
+     */
+    private static QueryBuilder queryString(String query) {
+        return queryStringQuery(query)
+            .allowLeadingWildcard(false)
+            .fuzzyPrefixLength(1)
+            .fuzzyMaxExpansions(20);
+    }
+
+    private static ScoreFunctionBuilder<?> impressionBalance() {
+        return scriptFunction(new Script(ScriptType.INLINE, "painless",
+            "doc.containsKey('impressions') && doc['impressions'].size() > 0"
+                + " ? params.scale / (params.scale + doc['impressions'].value) : 1",
+            Collections.singletonMap("scale", 1000d)));
+    }
 }
@@ -0,0 +1,103 @@
+package tech.ippon.hlegrand.web.rest;
+
+import tech.ippon.hlegrand.RandomizePaginateElasticsearchApp;
+import tech.ippon.hlegrand.service.AnimalService;
+import tech.ippon.hlegrand.service.ReindexService;
+import tech.ippon.hlegrand.service.dto.ReindexJobDTO;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Clock;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ReindexJobResource REST controller.
+ *
+ * @see ReindexJobResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RandomizePaginateElasticsearchApp.class)
+public class ReindexJobResourceIntTest {
+
+    @Mock
+    private AnimalService animalService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private Clock clock;
+
+    private ReindexService reindexService;
+
+    private MockMvc restReindexJobMockMvc;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        reindexService = new ReindexService(animalService, new SyncTaskExecutor(), clock);
+        ReindexJobResource reindexJobResource = new ReindexJobResource(reindexService);
+        this.restReindexJobMockMvc = MockMvcBuilders
+            .standaloneSetup(reindexJobResource)
+            .setMessageConverters(jacksonMessageConverter)
+            .build();
+    }
+
+    @Test
+    public void getCompletedReindexJob() throws Exception {
+        ReindexJobDTO job = reindexService.start();
+
+        restReindexJobMockMvc.perform(get("/management/reindex-jobs/{id}", job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.id").value(job.getId()))
+            .andExpect(jsonPath("$.status").value("COMPLETED"))
+            .andExpect(jsonPath("$.startDate").value(clock.instant().toString()))
+            .andExpect(jsonPath("$.endDate").value(clock.instant().toString()));
+    }
+
+    @Test
+    public void getFailedReindexJob() throws Exception {
+        when(animalService.reindexAll(any())).thenThrow(new IllegalStateException("Elasticsearch is down"));
+
+        ReindexJobDTO job = reindexService.start();
+
+        restReindexJobMockMvc.perform(get("/management/reindex-jobs/{id}", job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("FAILED"))
+            .andExpect(jsonPath("$.errorMessage").value("Elasticsearch is down"));
+    }
+
+    @Test
+    public void getAllReindexJobs() throws Exception {
+        ReindexJobDTO job = reindexService.start();
+
+        restReindexJobMockMvc.perform(get("/management/reindex-jobs"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(job.getId())));
+    }
+
+    @Test
+    public void getNonExistingReindexJob() throws Exception {
+        restReindexJobMockMvc.perform(get("/management/reindex-jobs/{id}", "unknown"))
+            .andExpect(status().isNotFound());
+    }
+}
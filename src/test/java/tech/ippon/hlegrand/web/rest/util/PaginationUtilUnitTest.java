@@ -2,11 +2,14 @@ package tech.ippon.hlegrand.web.rest.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import tech.ippon.hlegrand.service.dto.CursorPage;
+
 import org.junit.Test;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -155,4 +158,78 @@ public class PaginationUtilUnitTest {
         assertTrue(xTotalCountHeaders.size() == 1);
         assertTrue(Long.valueOf(xTotalCountHeaders.get(0)).equals(0L));
     }
+
+    @Test
+    public void searchWithoutQueryTest() {
+        String baseUrl = "/api/_search/example?promoted=true";
+        List<String> content = new ArrayList<>();
+        Page<String> page = new PageImpl<>(content);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(null, page, baseUrl);
+        String expectedData = "</api/_search/example?promoted=true&page=0&size=0>; rel=\"last\","
+                + "</api/_search/example?promoted=true&page=0&size=0>; rel=\"first\"";
+        assertEquals(expectedData, headers.getFirst(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void searchWithApproximateTotalTest() {
+        String baseUrl = "/api/_search/example";
+        List<String> content = new ArrayList<>();
+        Page<String> page = new PageImpl<>(content, PageRequest.of(0, 50), 400L);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders("Test", page, true, baseUrl);
+        assertEquals("400", headers.getFirst("X-Total-Count"));
+        assertEquals("gte", headers.getFirst("X-Total-Count-Relation"));
+
+        headers = PaginationUtil.generateSearchPaginationHttpHeaders("Test", page, false, baseUrl);
+        assertNull(headers.get("X-Total-Count-Relation"));
+    }
+
+    @Test
+    public void generateCursorPaginationHttpHeadersTest() {
+        String baseUrl = "/api/example";
+        List<String> content = new ArrayList<>();
+        CursorPage<String> page = new CursorPage<>(content, 50, "prevCursor", "nextCursor");
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page, baseUrl);
+        List<String> strHeaders = headers.get(HttpHeaders.LINK);
+        assertNotNull(strHeaders);
+        assertTrue(strHeaders.size() == 1);
+        String headerData = strHeaders.get(0);
+        assertTrue(headerData.split(",").length == 3);
+        String expectedData = "</api/example?cursor=nextCursor&size=50>; rel=\"next\","
+                + "</api/example?cursor=prevCursor&size=50>; rel=\"prev\","
+                + "</api/example?cursor=&size=50>; rel=\"first\"";
+        assertEquals(expectedData, headerData);
+        assertNull(headers.get("X-Total-Count"));
+    }
+
+    @Test
+    public void searchCursorPaginationWithApproximateTotalTest() {
+        String baseUrl = "/api/_search/example?order=random&seed=42";
+        List<String> content = new ArrayList<>();
+        CursorPage<String> page = new CursorPage<>(content, 20, null, "nextCursor", 10000L, true);
+        String query = "Test1, test2";
+        HttpHeaders headers = PaginationUtil.generateSearchCursorPaginationHttpHeaders(query, page, baseUrl);
+        List<String> strHeaders = headers.get(HttpHeaders.LINK);
+        assertNotNull(strHeaders);
+        assertTrue(strHeaders.size() == 1);
+        String headerData = strHeaders.get(0);
+        assertTrue(headerData.split(",").length == 2);
+        String expectedData = "</api/_search/example?order=random&seed=42&cursor=nextCursor&size=20&query=Test1%2C+test2>; rel=\"next\","
+                + "</api/_search/example?order=random&seed=42&cursor=&size=20&query=Test1%2C+test2>; rel=\"first\"";
+        assertEquals(expectedData, headerData);
+        List<String> xTotalCountHeaders = headers.get("X-Total-Count");
+        assertTrue(xTotalCountHeaders.size() == 1);
+        assertTrue(Long.valueOf(xTotalCountHeaders.get(0)).equals(10000L));
+        assertEquals("gte", headers.getFirst("X-Total-Count-Relation"));
+    }
+
+    @Test
+    public void searchCursorPaginationWithExactTotalTest() {
+        List<String> content = new ArrayList<>();
+        CursorPage<String> page = new CursorPage<>(content, 20, null, null, 3L, false);
+        HttpHeaders headers = PaginationUtil.generateSearchCursorPaginationHttpHeaders("test", page, "/api/_search/example");
+        String expectedData = "</api/_search/example?cursor=&size=20&query=test>; rel=\"first\"";
+        assertEquals(expectedData, headers.getFirst(HttpHeaders.LINK));
+        assertEquals("3", headers.getFirst("X-Total-Count"));
+        assertNull(headers.get("X-Total-Count-Relation"));
+    }
 }